@@ -6,10 +6,13 @@ import android.graphics.*;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Debug;
 import android.text.*;
 import android.text.format.DateFormat;
 import android.text.style.StyleSpan;
 import android.util.AttributeSet;
+import android.util.Log;
+import android.util.SparseArray;
 import android.util.TypedValue;
 import android.view.*;
 import android.widget.OverScroller;
@@ -35,6 +38,9 @@ public class WeekView extends View {
         NONE, LEFT, RIGHT, VERTICAL
     }
 
+    private static final String TAG = "WeekView";
+    private static final int MAX_CACHED_LABELS = 64;
+
     @Deprecated
     public static final int LENGTH_SHORT = 1;
     @Deprecated
@@ -69,6 +75,11 @@ public class WeekView extends View {
     private Paint mNewEventBackgroundPaint;
     private float mHeaderColumnWidth;
     private List<EventRect> mEventRects;
+    // The event rects of mEventRects by day index, in the same order.
+    private final SparseArray<List<EventRect>> mEventRectsByDay = new SparseArray<>();
+    // Day indices of the first and last day of the last frame, only their event rects have a rectF.
+    private int mDrawnFirstDayIndex = 0;
+    private int mDrawnLastDayIndex = -1;
     private List<WeekViewEvent> mEvents;
     private TextPaint mEventTextPaint;
     private TextPaint mNewEventTextPaint;
@@ -80,6 +91,16 @@ public class WeekView extends View {
     private boolean mIsZooming;
     private Calendar mFirstVisibleDay;
     private Calendar mLastVisibleDay;
+    // Days from the home date of the first and last visible day.
+    private int mFirstVisibleDayOffset;
+    private int mLastVisibleDayOffset;
+    // Reused while drawing, so drawing a frame doesn't allocate.
+    private final Calendar mDrawDay = Calendar.getInstance();
+    private final Calendar mNow = Calendar.getInstance();
+    private float[] mHourLines = new float[0];
+    private final SparseArray<String> mDayLabels = new SparseArray<>();
+    private final SparseArray<String> mTimeLabels = new SparseArray<>();
+    private boolean mDebugAllocations = false;
     private int mMinimumFlingVelocity = 0;
     private int mScaledTouchSlop = 0;
     private EventRect mNewEventRect;
@@ -118,6 +139,11 @@ public class WeekView extends View {
     private int mNewEventColor;
     private String mNewEventIdentifier = "-100";
     private Drawable mNewEventIconDrawable;
+    private Bitmap mNewEventIconSource;
+    private Bitmap mNewEventIcon;
+    private final Paint mNewEventIconPaint = new Paint();
+    // Increased whenever cached event text layouts become invalid.
+    private int mTextLayoutGeneration = 0;
     private int mNewEventLengthInMinutes = 60;
     private int mNewEventTimeResolutionInMinutes = 15;
     private boolean mShowFirstDayOfWeekFirst = false;
@@ -283,14 +309,11 @@ public class WeekView extends View {
 
             // If the tap was on an event then trigger the callback.
             if (mEventRects != null && mEventClickListener != null) {
-                List<EventRect> reversedEventRects = mEventRects;
-                Collections.reverse(reversedEventRects);
-                for (EventRect eventRect : reversedEventRects) {
-                    if (!mNewEventIdentifier.equals(eventRect.event.getIdentifier()) && eventRect.rectF != null && e.getX() > eventRect.rectF.left && e.getX() < eventRect.rectF.right && e.getY() > eventRect.rectF.top && e.getY() < eventRect.rectF.bottom) {
-                        mEventClickListener.onEventClick(eventRect.originalEvent, eventRect.rectF);
-                        playSoundEffect(SoundEffectConstants.CLICK);
-                        return super.onSingleTapConfirmed(e);
-                    }
+                EventRect eventRect = findDrawnEventRect(e.getX(), e.getY());
+                if (eventRect != null && !mNewEventIdentifier.equals(eventRect.event.getIdentifier())) {
+                    mEventClickListener.onEventClick(eventRect.originalEvent, eventRect.rectF);
+                    playSoundEffect(SoundEffectConstants.CLICK);
+                    return super.onSingleTapConfirmed(e);
                 }
             }
 
@@ -366,6 +389,7 @@ public class WeekView extends View {
                             WeekView.this.clearEvents();
                             cacheAndSortEvents(tempEvents);
                             computePositionOfEvents(mEventRects);
+                            bucketEventRects();
                             invalidate();
                         }
 
@@ -382,14 +406,11 @@ public class WeekView extends View {
             goToNearestOrigin();
 
             if (mEventLongPressListener != null && mEventRects != null) {
-                List<EventRect> reversedEventRects = mEventRects;
-                Collections.reverse(reversedEventRects);
-                for (EventRect event : reversedEventRects) {
-                    if (event.rectF != null && e.getX() > event.rectF.left && e.getX() < event.rectF.right && e.getY() > event.rectF.top && e.getY() < event.rectF.bottom) {
-                        mEventLongPressListener.onEventLongPress(event.originalEvent, event.rectF);
-                        performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
-                        return;
-                    }
+                EventRect event = findDrawnEventRect(e.getX(), e.getY());
+                if (event != null) {
+                    mEventLongPressListener.onEventLongPress(event.originalEvent, event.rectF);
+                    performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+                    return;
                 }
             }
 
@@ -609,6 +630,9 @@ public class WeekView extends View {
         }
 
         mHomeDate = newHomeDate;
+        // The offsets are relative to the home date.
+        mFirstVisibleDayOffset = Integer.MIN_VALUE;
+        mLastVisibleDayOffset = Integer.MIN_VALUE;
     }
 
     private float getXOriginForDate(Calendar date) {
@@ -675,36 +699,79 @@ public class WeekView extends View {
         }
     }
 
+    /**
+     * Returns the cached label of the day, the interpreter is only asked once per day.
+     */
+    private String getDayLabel(int dayIndex, Calendar day) {
+        String dayLabel = mDayLabels.get(dayIndex);
+        if (dayLabel == null) {
+            dayLabel = getDateTimeInterpreter().interpretDate(day);
+            if (dayLabel == null)
+                throw new IllegalStateException("A DateTimeInterpreter must not return null date");
+            if (mDayLabels.size() >= MAX_CACHED_LABELS)
+                mDayLabels.clear();
+            mDayLabels.put(dayIndex, dayLabel);
+        }
+        return dayLabel;
+    }
+
+    /**
+     * Returns the cached label of the time, the interpreter is only asked once per time.
+     */
+    private String getTimeLabel(int hour, int minutes) {
+        int key = getPassedMinutesInDay(hour, minutes);
+        String time = mTimeLabels.get(key);
+        if (time == null) {
+            time = getDateTimeInterpreter().interpretTime(hour, minutes);
+            if (time != null)
+                mTimeLabels.put(key, time);
+        }
+        return time;
+    }
+
+    private void clearLabels() {
+        mDayLabels.clear();
+        mTimeLabels.clear();
+    }
+
     @Override
+    @SuppressWarnings("deprecation")
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
+        if (mDebugAllocations) {
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+        }
+
         // Draw the header row.
         drawHeaderRowAndEvents(canvas);
 
         // Draw the time column and all the axes/separators.
         drawTimeColumnAndAxes(canvas);
+
+        if (mDebugAllocations) {
+            Debug.stopAllocCounting();
+            Log.d(TAG, "allocations per frame: " + Debug.getThreadAllocCount());
+        }
     }
 
     private void calculateHeaderHeight() {
         //Make sure the header is the right size (depends on AllDay events)
         boolean containsAllDayEvent = false;
-        if (mEventRects != null && mEventRects.size() > 0) {
-            for (int dayNumber = 0;
-                 dayNumber < getRealNumberOfVisibleDays();
-                 dayNumber++) {
-                Calendar day = (Calendar) getFirstVisibleDay().clone();
-                day.add(Calendar.DATE, dayNumber);
-                for (int i = 0; i < mEventRects.size(); i++) {
-
-                    if (isSameDay(mEventRects.get(i).event.getStartTime(), day) && mEventRects.get(i).event.isAllDay()) {
-                        containsAllDayEvent = true;
-                        break;
+        if (mEventRects != null && mEventRects.size() > 0 && getFirstVisibleDay() != null) {
+            int firstDayIndex = getDayIndex(getFirstVisibleDay());
+            int lastDayIndex = firstDayIndex + getRealNumberOfVisibleDays() - 1;
+            for (int dayIndex = firstDayIndex; dayIndex <= lastDayIndex && !containsAllDayEvent; dayIndex++) {
+                List<EventRect> eventRects = mEventRectsByDay.get(dayIndex);
+                if (eventRects != null) {
+                    for (int i = 0; i < eventRects.size(); i++) {
+                        if (eventRects.get(i).event.isAllDay()) {
+                            containsAllDayEvent = true;
+                            break;
+                        }
                     }
                 }
-                if (containsAllDayEvent) {
-                    break;
-                }
             }
         }
         if (containsAllDayEvent) {
@@ -741,7 +808,7 @@ public class WeekView extends View {
             float top = mHeaderHeight + mHeaderRowPadding * 2 + mCurrentOrigin.y + timeSpacing * i + mHeaderMarginBottom;
 
             // Get the time to be displayed, as a String.
-            String time = getDateTimeInterpreter().interpretTime(hour, minutes);
+            String time = getTimeLabel(hour, minutes);
             // Draw the text if its y position is not outside of the visible area. The pivot point of the text is the point at the bottom-right corner.
             if (time == null)
                 throw new IllegalStateException("A DateTimeInterpreter must not return null time");
@@ -758,7 +825,8 @@ public class WeekView extends View {
 
         calculateHeaderHeight(); //Make sure the header is the right size (depends on AllDay events)
 
-        Calendar today = today();
+        mNow.setTimeInMillis(System.currentTimeMillis());
+        int todayIndex = getDayIndex(mNow);
 
         if (mAreDimensionsInvalid) {
             mEffectiveMinHourHeight = Math.max(mMinHourHeight, (int) ((getHeight() - mHeaderHeight - mHeaderRowPadding * 2 - mHeaderMarginBottom) / (mMaxTime - mMinTime)));
@@ -793,6 +861,8 @@ public class WeekView extends View {
             else if (mNewHourHeight > mMaxHourHeight)
                 mNewHourHeight = mMaxHourHeight;
 
+            if (mHourHeight != mNewHourHeight)
+                mTextLayoutGeneration++;
             mHourHeight = mNewHourHeight;
             mNewHourHeight = -1;
         }
@@ -813,8 +883,8 @@ public class WeekView extends View {
         float startPixel = startFromPixel;
 
         // Prepare to iterate for each day.
-        Calendar day = (Calendar) today.clone();
-        day.add(Calendar.HOUR_OF_DAY, 6);
+        Calendar day = mDrawDay;
+        int homeDayIndex = getDayIndex(mHomeDate);
 
         // Prepare to iterate for each hour to draw the hour lines.
         int lineCount = (int) ((getHeight() - mHeaderHeight - mHeaderRowPadding * 2 -
@@ -822,37 +892,49 @@ public class WeekView extends View {
 
         lineCount = (lineCount) * (getRealNumberOfVisibleDays() + 1);
 
-        float[] hourLines = new float[lineCount * 4];
+        if (mHourLines.length < lineCount * 4)
+            mHourLines = new float[lineCount * 4];
+        float[] hourLines = mHourLines;
 
-        // Clear the cache for event rectangles.
-        if (mEventRects != null) {
-            for (EventRect eventRect : mEventRects) {
-                eventRect.rectF = null;
+        // Clear the cache for event rectangles, only the days of the last frame have one.
+        for (int dayIndex = mDrawnFirstDayIndex; dayIndex <= mDrawnLastDayIndex; dayIndex++) {
+            List<EventRect> eventRects = mEventRectsByDay.get(dayIndex);
+            if (eventRects != null) {
+                for (int i = 0; i < eventRects.size(); i++) {
+                    eventRects.get(i).rectF = null;
+                }
             }
         }
+        mDrawnFirstDayIndex = homeDayIndex + leftDaysWithGaps;
+        mDrawnLastDayIndex = homeDayIndex + leftDaysWithGaps + getRealNumberOfVisibleDays();
 
         // Clip to paint events only.
         canvas.save();
         canvas.clipRect(mHeaderColumnWidth, mHeaderHeight + mHeaderRowPadding * 2 + mHeaderMarginBottom + mTimeTextHeight / 2, getWidth(), getHeight());
 
         // Iterate through each day.
-        Calendar oldFirstVisibleDay = mFirstVisibleDay;
-        mFirstVisibleDay = (Calendar) mHomeDate.clone();
-        mFirstVisibleDay.add(Calendar.DATE, -(Math.round(mCurrentOrigin.x / (mWidthPerDay + mColumnGap))));
-        if (!mFirstVisibleDay.equals(oldFirstVisibleDay) && mScrollListener != null) {
-            mScrollListener.onFirstVisibleDayChanged(mFirstVisibleDay, oldFirstVisibleDay);
+        // Only a new first visible day is allocated.
+        int firstVisibleDayOffset = -(Math.round(mCurrentOrigin.x / (mWidthPerDay + mColumnGap)));
+        if (mFirstVisibleDay == null || mFirstVisibleDayOffset != firstVisibleDayOffset) {
+            Calendar oldFirstVisibleDay = mFirstVisibleDay;
+            mFirstVisibleDay = (Calendar) mHomeDate.clone();
+            mFirstVisibleDay.add(Calendar.DATE, firstVisibleDayOffset);
+            mFirstVisibleDayOffset = firstVisibleDayOffset;
+            if (!mFirstVisibleDay.equals(oldFirstVisibleDay) && mScrollListener != null) {
+                mScrollListener.onFirstVisibleDayChanged(mFirstVisibleDay, oldFirstVisibleDay);
+            }
         }
 
         if (mAutoLimitTime) {
-            List<Calendar> days = new ArrayList<>();
-            for (int dayNumber = leftDaysWithGaps + 1;
-                 dayNumber <= leftDaysWithGaps + getRealNumberOfVisibleDays();
-                 dayNumber++) {
-                day = (Calendar) mHomeDate.clone();
-                day.add(Calendar.DATE, dayNumber - 1);
-                days.add(day);
-            }
-            limitEventTime(days);
+            limitEventTime(homeDayIndex + leftDaysWithGaps,
+                    homeDayIndex + leftDaysWithGaps + getRealNumberOfVisibleDays() - 1);
+        }
+
+        int lastVisibleDayOffset = leftDaysWithGaps + getRealNumberOfVisibleDays() - 1;
+        if (mLastVisibleDay == null || mLastVisibleDayOffset != lastVisibleDayOffset) {
+            mLastVisibleDay = (Calendar) mHomeDate.clone();
+            mLastVisibleDay.add(Calendar.DATE, lastVisibleDayOffset);
+            mLastVisibleDayOffset = lastVisibleDayOffset;
         }
 
         for (int dayNumber = leftDaysWithGaps + 1;
@@ -860,11 +942,10 @@ public class WeekView extends View {
              dayNumber++) {
 
             // Check if the day is today.
-            day = (Calendar) mHomeDate.clone();
-            mLastVisibleDay = (Calendar) day.clone();
+            day.setTimeInMillis(mHomeDate.getTimeInMillis());
             day.add(Calendar.DATE, dayNumber - 1);
-            mLastVisibleDay.add(Calendar.DATE, dayNumber - 2);
-            boolean isToday = isSameDay(day, today);
+            int dayIndex = homeDayIndex + dayNumber - 1;
+            boolean isToday = dayIndex == todayIndex;
 
             // Don't draw days which are outside requested range
             if (!dateIsValid(day)) {
@@ -890,11 +971,10 @@ public class WeekView extends View {
                     float startY = mHeaderHeight + mHeaderRowPadding * 2 + mTimeTextHeight / 2 + mHeaderMarginBottom + mCurrentOrigin.y;
 
                     if (isToday) {
-                        Calendar now = Calendar.getInstance();
-                        float beforeNow = (now.get(Calendar.HOUR_OF_DAY) - mMinTime + now.get(Calendar.MINUTE) / 60.0f) * mHourHeight;
+                        float beforeNow = (mNow.get(Calendar.HOUR_OF_DAY) - mMinTime + mNow.get(Calendar.MINUTE) / 60.0f) * mHourHeight;
                         canvas.drawRect(start, startY, startPixel + mWidthPerDay, startY + beforeNow, pastPaint);
                         canvas.drawRect(start, startY + beforeNow, startPixel + mWidthPerDay, getHeight(), futurePaint);
-                    } else if (day.before(today)) {
+                    } else if (dayIndex < todayIndex) {
                         canvas.drawRect(start, startY, startPixel + mWidthPerDay, getHeight(), pastPaint);
                     } else {
                         canvas.drawRect(start, startY, startPixel + mWidthPerDay, getHeight(), futurePaint);
@@ -918,16 +998,16 @@ public class WeekView extends View {
             }
 
             // Draw the lines for hours.
-            canvas.drawLines(hourLines, mHourSeparatorPaint);
+            if (i > 0)
+                canvas.drawLines(hourLines, 0, i * 4, mHourSeparatorPaint);
 
             // Draw the events.
-            drawEvents(day, startPixel, canvas);
+            drawEvents(dayIndex, startPixel, canvas);
 
             // Draw the line at the current time.
             if (mShowNowLine && isToday) {
                 float startY = mHeaderHeight + mHeaderRowPadding * 2 + mTimeTextHeight / 2 + mHeaderMarginBottom + mCurrentOrigin.y;
-                Calendar now = Calendar.getInstance();
-                float beforeNow = (now.get(Calendar.HOUR_OF_DAY) - mMinTime + now.get(Calendar.MINUTE) / 60.0f) * mHourHeight;
+                float beforeNow = (mNow.get(Calendar.HOUR_OF_DAY) - mMinTime + mNow.get(Calendar.MINUTE) / 60.0f) * mHourHeight;
                 float top = startY + beforeNow;
                 canvas.drawLine(start, top, startPixel + mWidthPerDay, top, mNowLinePaint);
             }
@@ -955,20 +1035,19 @@ public class WeekView extends View {
         startPixel = startFromPixel;
         for (int dayNumber = leftDaysWithGaps + 1; dayNumber <= leftDaysWithGaps + getRealNumberOfVisibleDays() + 1; dayNumber++) {
             // Check if the day is today.
-            day = (Calendar) mHomeDate.clone();
+            day.setTimeInMillis(mHomeDate.getTimeInMillis());
             day.add(Calendar.DATE, dayNumber - 1);
-            boolean isToday = isSameDay(day, today);
+            int dayIndex = homeDayIndex + dayNumber - 1;
+            boolean isToday = dayIndex == todayIndex;
 
             // Don't draw days which are outside requested range
             if (!dateIsValid(day))
                 continue;
 
             // Draw the day labels.
-            String dayLabel = getDateTimeInterpreter().interpretDate(day);
-            if (dayLabel == null)
-                throw new IllegalStateException("A DateTimeInterpreter must not return null date");
+            String dayLabel = getDayLabel(dayIndex, day);
             canvas.drawText(dayLabel, startPixel + mWidthPerDay / 2, mHeaderTextHeight + mHeaderRowPadding, isToday ? mTodayHeaderTextPaint : mHeaderTextPaint);
-            drawAllDayEvents(day, startPixel, canvas);
+            drawAllDayEvents(dayIndex, startPixel, canvas);
             startPixel += mWidthPerDay + mColumnGap;
         }
 
@@ -1007,23 +1086,30 @@ public class WeekView extends View {
     /**
      * limit current time of event by update mMinTime & mMaxTime
      * find smallest of start time & latest of end time
+     *
+     * @param firstDayIndex day index of the first visible day
+     * @param lastDayIndex  day index of the last visible day
      */
-    private void limitEventTime(List<Calendar> dates) {
+    private void limitEventTime(int firstDayIndex, int lastDayIndex) {
         if (mEventRects != null && mEventRects.size() > 0) {
             Calendar startTime = null;
             Calendar endTime = null;
 
-            for (EventRect eventRect : mEventRects) {
-                for (Calendar date : dates) {
-                    if (isSameDay(eventRect.event.getStartTime(), date) && !eventRect.event.isAllDay()) {
-
-                        if (startTime == null || getPassedMinutesInDay(startTime) > getPassedMinutesInDay(eventRect.event.getStartTime())) {
-                            startTime = eventRect.event.getStartTime();
-                        }
+            for (int dayIndex = firstDayIndex; dayIndex <= lastDayIndex; dayIndex++) {
+                List<EventRect> eventRects = mEventRectsByDay.get(dayIndex);
+                if (eventRects == null)
+                    continue;
+                for (int i = 0; i < eventRects.size(); i++) {
+                    EventRect eventRect = eventRects.get(i);
+                    if (eventRect.event.isAllDay())
+                        continue;
+
+                    if (startTime == null || getPassedMinutesInDay(startTime) > getPassedMinutesInDay(eventRect.event.getStartTime())) {
+                        startTime = eventRect.event.getStartTime();
+                    }
 
-                        if (endTime == null || getPassedMinutesInDay(endTime) < getPassedMinutesInDay(eventRect.event.getEndTime())) {
-                            endTime = eventRect.event.getEndTime();
-                        }
+                    if (endTime == null || getPassedMinutesInDay(endTime) < getPassedMinutesInDay(eventRect.event.getEndTime())) {
+                        endTime = eventRect.event.getEndTime();
                     }
                 }
             }
@@ -1058,22 +1144,24 @@ public class WeekView extends View {
     /**
      * Draw all the events of a particular day.
      *
-     * @param date           The day.
+     * @param dayIndex       The day index of the day, see {@link WeekViewUtil#getDayIndex(Calendar)}.
      * @param startFromPixel The left position of the day area. The events will never go any left from this value.
      * @param canvas         The canvas to draw upon.
      */
-    private void drawEvents(Calendar date, float startFromPixel, Canvas canvas) {
-        if (mEventRects != null && mEventRects.size() > 0) {
-            for (int i = 0; i < mEventRects.size(); i++) {
-                if (isSameDay(mEventRects.get(i).event.getStartTime(), date) && !mEventRects.get(i).event.isAllDay()) {
-                    float top = mHourHeight * mEventRects.get(i).top / 60 + getEventsTop();
-                    float bottom = mHourHeight * mEventRects.get(i).bottom / 60 + getEventsTop();
+    private void drawEvents(int dayIndex, float startFromPixel, Canvas canvas) {
+        List<EventRect> eventRects = mEventRectsByDay.get(dayIndex);
+        if (eventRects != null) {
+            for (int i = 0; i < eventRects.size(); i++) {
+                EventRect eventRect = eventRects.get(i);
+                if (!eventRect.event.isAllDay()) {
+                    float top = mHourHeight * eventRect.top / 60 + getEventsTop();
+                    float bottom = mHourHeight * eventRect.bottom / 60 + getEventsTop();
 
                     // Calculate left and right.
-                    float left = startFromPixel + mEventRects.get(i).left * mWidthPerDay;
+                    float left = startFromPixel + eventRect.left * mWidthPerDay;
                     if (left < startFromPixel)
                         left += mOverlappingEventGap;
-                    float right = left + mEventRects.get(i).width * mWidthPerDay;
+                    float right = left + eventRect.width * mWidthPerDay;
                     if (right < startFromPixel + mWidthPerDay)
                         right -= mOverlappingEventGap;
 
@@ -1084,21 +1172,22 @@ public class WeekView extends View {
                             right > mHeaderColumnWidth &&
                             bottom > mHeaderHeight + mHeaderRowPadding * 2 + mTimeTextHeight / 2 + mHeaderMarginBottom
                             ) {
-                        mEventRects.get(i).rectF = new RectF(left, top, right, bottom);
-                        mEventBackgroundPaint.setColor(mEventRects.get(i).event.getColor() == 0 ? mDefaultEventColor : mEventRects.get(i).event.getColor());
-                        mEventBackgroundPaint.setShader(mEventRects.get(i).event.getShader());
-                        canvas.drawRoundRect(mEventRects.get(i).rectF, mEventCornerRadius, mEventCornerRadius, mEventBackgroundPaint);
+                        eventRect.bounds.set(left, top, right, bottom);
+                        eventRect.rectF = eventRect.bounds;
+                        mEventBackgroundPaint.setColor(eventRect.event.getColor() == 0 ? mDefaultEventColor : eventRect.event.getColor());
+                        mEventBackgroundPaint.setShader(eventRect.event.getShader());
+                        canvas.drawRoundRect(eventRect.rectF, mEventCornerRadius, mEventCornerRadius, mEventBackgroundPaint);
                         float topToUse = top;
-                        if (mEventRects.get(i).event.getStartTime().get(Calendar.HOUR_OF_DAY) < mMinTime)
+                        if (eventRect.event.getStartTime().get(Calendar.HOUR_OF_DAY) < mMinTime)
                             topToUse = mHourHeight * getPassedMinutesInDay(mMinTime, 0) / 60 + getEventsTop();
 
-                        if (!mNewEventIdentifier.equals(mEventRects.get(i).event.getIdentifier()))
-                            drawEventTitle(mEventRects.get(i).event, mEventRects.get(i).rectF, canvas, topToUse, left);
+                        if (!mNewEventIdentifier.equals(eventRect.event.getIdentifier()))
+                            drawEventTitle(eventRect, canvas, topToUse, left);
                         else
-                            drawEmptyImage(mEventRects.get(i).event, mEventRects.get(i).rectF, canvas, topToUse, left);
+                            drawEmptyImage(eventRect.rectF, canvas, topToUse, left);
 
                     } else
-                        mEventRects.get(i).rectF = null;
+                        eventRect.rectF = null;
                 }
             }
         }
@@ -1107,26 +1196,28 @@ public class WeekView extends View {
     /**
      * Draw all the Allday-events of a particular day.
      *
-     * @param date           The day.
+     * @param dayIndex       The day index of the day, see {@link WeekViewUtil#getDayIndex(Calendar)}.
      * @param startFromPixel The left position of the day area. The events will never go any left from this value.
      * @param canvas         The canvas to draw upon.
      */
-    private void drawAllDayEvents(Calendar date, float startFromPixel, Canvas canvas) {
-        if (mEventRects != null && mEventRects.size() > 0) {
-            for (int i = 0; i < mEventRects.size(); i++) {
-                if (isSameDay(mEventRects.get(i).event.getStartTime(), date) && mEventRects.get(i).event.isAllDay()) {
+    private void drawAllDayEvents(int dayIndex, float startFromPixel, Canvas canvas) {
+        List<EventRect> eventRects = mEventRectsByDay.get(dayIndex);
+        if (eventRects != null) {
+            for (int i = 0; i < eventRects.size(); i++) {
+                EventRect eventRect = eventRects.get(i);
+                if (eventRect.event.isAllDay()) {
 
                     // Calculate top.
                     float top = mHeaderRowPadding * 2 + mHeaderMarginBottom + +mTimeTextHeight / 2 + mEventMarginVertical;
 
                     // Calculate bottom.
-                    float bottom = top + mEventRects.get(i).bottom;
+                    float bottom = top + eventRect.bottom;
 
                     // Calculate left and right.
-                    float left = startFromPixel + mEventRects.get(i).left * mWidthPerDay;
+                    float left = startFromPixel + eventRect.left * mWidthPerDay;
                     if (left < startFromPixel)
                         left += mOverlappingEventGap;
-                    float right = left + mEventRects.get(i).width * mWidthPerDay;
+                    float right = left + eventRect.width * mWidthPerDay;
                     if (right < startFromPixel + mWidthPerDay)
                         right -= mOverlappingEventGap;
 
@@ -1137,44 +1228,75 @@ public class WeekView extends View {
                             right > mHeaderColumnWidth &&
                             bottom > 0
                             ) {
-                        mEventRects.get(i).rectF = new RectF(left, top, right, bottom);
-                        mEventBackgroundPaint.setColor(mEventRects.get(i).event.getColor() == 0 ? mDefaultEventColor : mEventRects.get(i).event.getColor());
-                        mEventBackgroundPaint.setShader(mEventRects.get(i).event.getShader());
-                        canvas.drawRoundRect(mEventRects.get(i).rectF, mEventCornerRadius, mEventCornerRadius, mEventBackgroundPaint);
-                        drawEventTitle(mEventRects.get(i).event, mEventRects.get(i).rectF, canvas, top, left);
+                        eventRect.bounds.set(left, top, right, bottom);
+                        eventRect.rectF = eventRect.bounds;
+                        mEventBackgroundPaint.setColor(eventRect.event.getColor() == 0 ? mDefaultEventColor : eventRect.event.getColor());
+                        mEventBackgroundPaint.setShader(eventRect.event.getShader());
+                        canvas.drawRoundRect(eventRect.rectF, mEventCornerRadius, mEventCornerRadius, mEventBackgroundPaint);
+                        drawEventTitle(eventRect, canvas, top, left);
                     } else
-                        mEventRects.get(i).rectF = null;
+                        eventRect.rectF = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the topmost event rect drawn in the last frame at the given position.
+     *
+     * @param x The x position of the touch event.
+     * @param y The y position of the touch event.
+     * @return The event rect or null if there is none.
+     */
+    @Nullable
+    private EventRect findDrawnEventRect(float x, float y) {
+        for (int dayIndex = mDrawnFirstDayIndex; dayIndex <= mDrawnLastDayIndex; dayIndex++) {
+            List<EventRect> eventRects = mEventRectsByDay.get(dayIndex);
+            if (eventRects == null)
+                continue;
+            // Topmost first.
+            for (int i = eventRects.size() - 1; i >= 0; i--) {
+                EventRect eventRect = eventRects.get(i);
+                if (eventRect.rectF != null && x > eventRect.rectF.left && x < eventRect.rectF.right && y > eventRect.rectF.top && y < eventRect.rectF.bottom) {
+                    return eventRect;
                 }
             }
         }
+        return null;
+    }
+
+    /**
+     * Puts the event rects into the buckets of their day, so drawing and hit-testing only touch the
+     * event rects of the visible days.
+     */
+    private void bucketEventRects() {
+        mEventRectsByDay.clear();
+        if (mEventRects != null) {
+            for (EventRect eventRect : mEventRects) {
+                List<EventRect> eventRects = mEventRectsByDay.get(eventRect.dayIndex);
+                if (eventRects == null) {
+                    eventRects = new ArrayList<>();
+                    mEventRectsByDay.put(eventRect.dayIndex, eventRects);
+                }
+                eventRects.add(eventRect);
+            }
+        }
     }
 
     /**
      * Draw the name of the event on top of the event rectangle.
      *
-     * @param event        The event of which the title (and location) should be drawn.
-     * @param rect         The rectangle on which the text is to be drawn.
+     * @param eventRect    The event rect of which the title (and location) should be drawn.
      * @param canvas       The canvas to draw upon.
      * @param originalTop  The original top position of the rectangle. The rectangle may have some of its portion outside of the visible area.
      * @param originalLeft The original left position of the rectangle. The rectangle may have some of its portion outside of the visible area.
      */
-    private void drawEventTitle(WeekViewEvent event, RectF rect, Canvas canvas, float originalTop, float originalLeft) {
+    private void drawEventTitle(EventRect eventRect, Canvas canvas, float originalTop, float originalLeft) {
+        WeekViewEvent event = eventRect.event;
+        RectF rect = eventRect.rectF;
         if (rect.right - rect.left - mEventPadding * 2 < 0) return;
         if (rect.bottom - rect.top - mEventPadding * 2 < 0) return;
 
-        // Prepare the name of the event.
-        SpannableStringBuilder bob = new SpannableStringBuilder();
-        if (!TextUtils.isEmpty(event.getName())) {
-            bob.append(event.getName());
-            bob.setSpan(new StyleSpan(android.graphics.Typeface.BOLD), 0, bob.length(), 0);
-        }
-        // Prepare the location of the event.
-        if (!TextUtils.isEmpty(event.getLocation())) {
-            if (bob.length() > 0)
-                bob.append(' ');
-            bob.append(event.getLocation());
-        }
-
         int availableHeight = (int) (rect.bottom - originalTop - mEventPadding * 2);
         int availableWidth = (int) (rect.right - originalLeft - mEventPadding * 2);
 
@@ -1182,8 +1304,54 @@ public class WeekView extends View {
         if (textColorPicker != null) {
             mEventTextPaint.setColor(textColorPicker.getTextColor(event));
         }
+
+        // The available size stays the same while scrolling, so the layout is reused until zoom,
+        // text style or events change.
+        if (eventRect.textLayoutGeneration != mTextLayoutGeneration ||
+                eventRect.textLayoutWidth != availableWidth ||
+                eventRect.textLayoutHeight != availableHeight) {
+            eventRect.textLayout = createEventTitleLayout(eventRect, availableWidth, availableHeight);
+            eventRect.textLayoutGeneration = mTextLayoutGeneration;
+            eventRect.textLayoutWidth = availableWidth;
+            eventRect.textLayoutHeight = availableHeight;
+        }
+
+        if (eventRect.textLayout != null) {
+            // Draw text.
+            canvas.save();
+            canvas.translate(originalLeft + mEventPadding, originalTop + mEventPadding);
+            eventRect.textLayout.draw(canvas);
+            canvas.restore();
+        }
+    }
+
+    /**
+     * Creates the layout of the name (and location) of the event, ellipsized to the available size.
+     *
+     * @return The layout or null if not even one line fits.
+     */
+    @Nullable
+    private StaticLayout createEventTitleLayout(EventRect eventRect, int availableWidth, int availableHeight) {
+        WeekViewEvent event = eventRect.event;
+
+        // Prepare the name of the event.
+        if (eventRect.title == null) {
+            SpannableStringBuilder bob = new SpannableStringBuilder();
+            if (!TextUtils.isEmpty(event.getName())) {
+                bob.append(event.getName());
+                bob.setSpan(new StyleSpan(android.graphics.Typeface.BOLD), 0, bob.length(), 0);
+            }
+            // Prepare the location of the event.
+            if (!TextUtils.isEmpty(event.getLocation())) {
+                if (bob.length() > 0)
+                    bob.append(' ');
+                bob.append(event.getLocation());
+            }
+            eventRect.title = bob;
+        }
+
         // Get text dimensions.
-        StaticLayout textLayout = new StaticLayout(bob, mEventTextPaint, availableWidth, Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
+        StaticLayout textLayout = new StaticLayout(eventRect.title, mEventTextPaint, availableWidth, Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
         if (textLayout.getLineCount() > 0) {
             int lineHeight = textLayout.getHeight() / textLayout.getLineCount();
 
@@ -1193,7 +1361,7 @@ public class WeekView extends View {
                 do {
                     // Ellipsize text to fit into event rect.
                     if (!mNewEventIdentifier.equals(event.getIdentifier()))
-                        textLayout = new StaticLayout(TextUtils.ellipsize(bob, mEventTextPaint, availableLineCount * availableWidth, TextUtils.TruncateAt.END), mEventTextPaint, (int) (rect.right - originalLeft - mEventPadding * 2), Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
+                        textLayout = new StaticLayout(TextUtils.ellipsize(eventRect.title, mEventTextPaint, availableLineCount * availableWidth, TextUtils.TruncateAt.END), mEventTextPaint, availableWidth, Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
 
                     // Reduce line count.
                     availableLineCount--;
@@ -1201,25 +1369,26 @@ public class WeekView extends View {
                     // Repeat until text is short enough.
                 } while (textLayout.getHeight() > availableHeight);
 
-                // Draw text.
-                canvas.save();
-                canvas.translate(originalLeft + mEventPadding, originalTop + mEventPadding);
-                textLayout.draw(canvas);
-                canvas.restore();
+                return textLayout;
             }
         }
+        return null;
     }
 
     /**
      * Draw the text on top of the rectangle in the empty event.
      */
-    private void drawEmptyImage(WeekViewEvent event, RectF rect, Canvas canvas, float originalTop, float originalLeft) {
+    private void drawEmptyImage(RectF rect, Canvas canvas, float originalTop, float originalLeft) {
         int size = Math.max(1, (int) Math.floor(Math.min(0.8 * rect.height(), 0.8 * rect.width())));
         if (mNewEventIconDrawable == null)
             mNewEventIconDrawable = getResources().getDrawable(android.R.drawable.ic_input_add);
         Bitmap icon = ((BitmapDrawable) mNewEventIconDrawable).getBitmap();
-        icon = Bitmap.createScaledBitmap(icon, size, size, false);
-        canvas.drawBitmap(icon, originalLeft + (rect.width() - icon.getWidth()) / 2, originalTop + (rect.height() - icon.getHeight()) / 2, new Paint());
+        // Scale only if the size changed.
+        if (mNewEventIcon == null || mNewEventIconSource != icon || mNewEventIcon.getWidth() != size) {
+            mNewEventIcon = Bitmap.createScaledBitmap(icon, size, size, false);
+            mNewEventIconSource = icon;
+        }
+        canvas.drawBitmap(mNewEventIcon, originalLeft + (rect.width() - mNewEventIcon.getWidth()) / 2, originalTop + (rect.height() - mNewEventIcon.getHeight()) / 2, mNewEventIconPaint);
 
     }
 
@@ -1235,10 +1404,20 @@ public class WeekView extends View {
         public WeekViewEvent event;
         public WeekViewEvent originalEvent;
         public RectF rectF;
+        // Reused as rectF when the event is drawn.
+        public final RectF bounds = new RectF();
+        public final int dayIndex;
         public float left;
         public float width;
         public float top;
         public float bottom;
+        public int column;
+        // Cached text layout of drawEventTitle and the size and generation it was created for.
+        public CharSequence title;
+        public StaticLayout textLayout;
+        public int textLayoutWidth;
+        public int textLayoutHeight;
+        public int textLayoutGeneration = -1;
 
         /**
          * Create a new instance of event rect. An EventRect is actually the rectangle that is drawn
@@ -1256,9 +1435,18 @@ public class WeekView extends View {
             this.event = event;
             this.rectF = rectF;
             this.originalEvent = originalEvent;
+            this.dayIndex = getDayIndex(event.getStartTime());
         }
     }
 
+    /**
+     * Events colliding with each other, along with the end of the event ending last.
+     */
+    private static class CollisionGroup {
+        public final List<EventRect> events = new ArrayList<>();
+        public long end = Long.MIN_VALUE;
+    }
+
 
     /**
      * Gets more events of one/more month(s) if necessary. This method is called when the user is
@@ -1293,7 +1481,6 @@ public class WeekView extends View {
                 // Clear events.
                 this.clearEvents();
                 cacheAndSortEvents(newEvents);
-                calculateHeaderHeight();
 
                 mFetchedPeriod = periodToFetch;
             }
@@ -1303,31 +1490,30 @@ public class WeekView extends View {
         List<EventRect> tempEvents = mEventRects;
         mEventRects = new ArrayList<>();
 
-        // Iterate through each day with events to calculate the position of the events.
-        while (tempEvents.size() > 0) {
-            ArrayList<EventRect> eventRects = new ArrayList<>(tempEvents.size());
-
-            // Get first event for a day.
-            EventRect eventRect1 = tempEvents.remove(0);
-            eventRects.add(eventRect1);
-
-            int i = 0;
-            while (i < tempEvents.size()) {
-                // Collect all other events for same day.
-                EventRect eventRect2 = tempEvents.get(i);
-                if (isSameDay(eventRect1.event.getStartTime(), eventRect2.event.getStartTime())) {
-                    tempEvents.remove(i);
-                    eventRects.add(eventRect2);
-                } else {
-                    i++;
-                }
+        // Collect the events of each day, in order of the first event of the day. The events of a
+        // day stay sorted.
+        Map<Integer, List<EventRect>> days = new LinkedHashMap<>();
+        for (EventRect eventRect : tempEvents) {
+            List<EventRect> eventRects = days.get(eventRect.dayIndex);
+            if (eventRects == null) {
+                eventRects = new ArrayList<>();
+                days.put(eventRect.dayIndex, eventRects);
             }
+            eventRects.add(eventRect);
+        }
+
+        // Calculate the position of the events of each day.
+        for (List<EventRect> eventRects : days.values()) {
             computePositionOfEvents(eventRects);
         }
+
+        bucketEventRects();
+        calculateHeaderHeight();
     }
 
     private void clearEvents() {
         mEventRects.clear();
+        mEventRectsByDay.clear();
         mEvents.clear();
     }
 
@@ -1385,30 +1571,41 @@ public class WeekView extends View {
      * Calculates the left and right positions of each events. This comes handy specially if events
      * are overlapping.
      *
-     * @param eventRects The events along with their wrapper class.
+     * @param eventRects The events along with their wrapper class, sorted by start and end time.
      */
     private void computePositionOfEvents(List<EventRect> eventRects) {
-        // Make "collision groups" for all events that collide with others.
-        List<List<EventRect>> collisionGroups = new ArrayList<List<EventRect>>();
+        // Make "collision groups" for all events that collide with others. The events are sorted,
+        // so an event is only tested against the open groups of its kind (all day or not).
+        final long minOverlappingMillis = mMinOverlappingMinutes * 60 * 1000L;
+        List<List<EventRect>> collisionGroups = new ArrayList<>();
+        List<CollisionGroup> openGroups = new ArrayList<>();
+        List<CollisionGroup> openAllDayGroups = new ArrayList<>();
         for (EventRect eventRect : eventRects) {
-            boolean isPlaced = false;
-
-            outerLoop:
-            for (List<EventRect> collisionGroup : collisionGroups) {
-                for (EventRect groupEvent : collisionGroup) {
-                    if (isEventsCollide(groupEvent.event, eventRect.event) && groupEvent.event.isAllDay() == eventRect.event.isAllDay()) {
-                        collisionGroup.add(eventRect);
-                        isPlaced = true;
-                        break outerLoop;
-                    }
+            List<CollisionGroup> open = eventRect.event.isAllDay() ? openAllDayGroups : openGroups;
+            long start = eventRect.event.getStartTime().getTimeInMillis();
+
+            // A group that ends before the minimum overlap can't collide with this or any later event.
+            Iterator<CollisionGroup> iterator = open.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().end <= start + minOverlappingMillis) {
+                    iterator.remove();
                 }
             }
 
-            if (!isPlaced) {
-                List<EventRect> newGroup = new ArrayList<EventRect>();
-                newGroup.add(eventRect);
-                collisionGroups.add(newGroup);
+            CollisionGroup collisionGroup = null;
+            for (CollisionGroup openGroup : open) {
+                if (isEventCollidingWithGroup(openGroup, eventRect)) {
+                    collisionGroup = openGroup;
+                    break;
+                }
             }
+            if (collisionGroup == null) {
+                collisionGroup = new CollisionGroup();
+                open.add(collisionGroup);
+                collisionGroups.add(collisionGroup.events);
+            }
+            collisionGroup.events.add(eventRect);
+            collisionGroup.end = Math.max(collisionGroup.end, eventRect.event.getEndTime().getTimeInMillis());
         }
 
         for (List<EventRect> collisionGroup : collisionGroups) {
@@ -1416,33 +1613,62 @@ public class WeekView extends View {
         }
     }
 
+    /**
+     * Checks if an event collides with any member of an open collision group.
+     *
+     * @param group     The group, ending after the event starts plus the minimum overlap.
+     * @param eventRect The event to check, starting after or with all members of the group.
+     * @return true if the event collides with a member of the group.
+     */
+    private boolean isEventCollidingWithGroup(CollisionGroup group, EventRect eventRect) {
+        // The member ending last collides, unless the event is not longer than the minimum overlap.
+        // Then a member starting early enough may still collide.
+        long minOverlappingMillis = mMinOverlappingMinutes * 60 * 1000L;
+        if (eventRect.event.getEndTime().getTimeInMillis() - minOverlappingMillis > eventRect.event.getStartTime().getTimeInMillis()) {
+            return true;
+        }
+        for (EventRect member : group.events) {
+            if (isEventsCollide(member.event, eventRect.event)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Expands all the events to maximum possible width. The events will try to occupy maximum
      * space available horizontally.
      *
-     * @param collisionGroup The group of events which overlap with each other.
+     * @param collisionGroup The group of events which overlap with each other, sorted by start time.
      */
     private void expandEventsToMaxWidth(List<EventRect> collisionGroup) {
-        // Expand the events to maximum possible width.
-        List<List<EventRect>> columns = new ArrayList<List<EventRect>>();
-        columns.add(new ArrayList<EventRect>());
+        // Put each event into the first column whose last event has ended. Busy columns are
+        // ordered by the end of their last event, free columns by index.
+        final long minOverlappingMillis = mMinOverlappingMinutes * 60 * 1000L;
+        List<List<EventRect>> columns = new ArrayList<>();
+        PriorityQueue<EventRect> busyColumns = new PriorityQueue<>(Math.max(1, collisionGroup.size()), new Comparator<EventRect>() {
+            @Override
+            public int compare(EventRect left, EventRect right) {
+                long end1 = left.event.getEndTime().getTimeInMillis();
+                long end2 = right.event.getEndTime().getTimeInMillis();
+                return end1 > end2 ? 1 : (end1 < end2 ? -1 : 0);
+            }
+        });
+        TreeSet<Integer> freeColumns = new TreeSet<>();
         for (EventRect eventRect : collisionGroup) {
-            boolean isPlaced = false;
-            for (List<EventRect> column : columns) {
-                if (column.size() == 0) {
-                    column.add(eventRect);
-                    isPlaced = true;
-                } else if (!isEventsCollide(eventRect.event, column.get(column.size() - 1).event)) {
-                    column.add(eventRect);
-                    isPlaced = true;
-                    break;
-                }
+            long start = eventRect.event.getStartTime().getTimeInMillis();
+            while (!busyColumns.isEmpty() && start + minOverlappingMillis >= busyColumns.peek().event.getEndTime().getTimeInMillis()) {
+                freeColumns.add(busyColumns.poll().column);
             }
-            if (!isPlaced) {
-                List<EventRect> newColumn = new ArrayList<EventRect>();
-                newColumn.add(eventRect);
-                columns.add(newColumn);
+
+            if (freeColumns.isEmpty()) {
+                eventRect.column = columns.size();
+                columns.add(new ArrayList<EventRect>());
+            } else {
+                eventRect.column = freeColumns.pollFirst();
             }
+            columns.get(eventRect.column).add(eventRect);
+            busyColumns.add(eventRect);
         }
 
         // Calculate left and right position for all the events.
@@ -1595,6 +1821,7 @@ public class WeekView extends View {
 
     public void setTimeColumnResolution(int resolution) {
         mTimeColumnResolution = resolution;
+        clearLabels();
     }
 
     public int getTimeColumnResolution() {
@@ -1667,6 +1894,7 @@ public class WeekView extends View {
      */
     public void setDateTimeInterpreter(DateTimeInterpreter dateTimeInterpreter) {
         this.mDateTimeInterpreter = dateTimeInterpreter;
+        clearLabels();
 
         // Refresh time column width.
         initTextTimeWidth();
@@ -1794,6 +2022,7 @@ public class WeekView extends View {
             mTodayHeaderTextPaint.setTypeface(typeface);
             mTimeTextPaint.setTypeface(typeface);
             mTypeface = typeface;
+            mTextLayoutGeneration++;
             init();
         }
     }
@@ -1874,6 +2103,7 @@ public class WeekView extends View {
     public void setEventTextSize(int eventTextSize) {
         mEventTextSize = eventTextSize;
         mEventTextPaint.setTextSize(mEventTextSize);
+        mTextLayoutGeneration++;
         invalidate();
     }
 
@@ -1901,6 +2131,7 @@ public class WeekView extends View {
 
     public void setEventPadding(int eventPadding) {
         mEventPadding = eventPadding;
+        mTextLayoutGeneration++;
         invalidate();
     }
 
@@ -1993,6 +2224,7 @@ public class WeekView extends View {
             throw new IllegalArgumentException("length parameter must be either LENGTH_LONG or LENGTH_SHORT");
         }
         this.mDayNameLength = length;
+        clearLabels();
     }
 
     public int getOverlappingEventGap() {
@@ -2037,6 +2269,16 @@ public class WeekView extends View {
         invalidate();
     }
 
+    /**
+     * Logs the number of objects allocated while drawing each frame. Only meant for debugging,
+     * counting allocations slows down drawing.
+     *
+     * @param debugAllocations true to log the allocations per frame
+     */
+    public void setDebugAllocations(boolean debugAllocations) {
+        mDebugAllocations = debugAllocations;
+    }
+
     /**
      * Returns the first visible day in the week view.
      *
@@ -2665,6 +2907,7 @@ public class WeekView extends View {
      */
     public void notifyDatasetChanged() {
         mRefreshEvents = true;
+        mTextLayoutGeneration++;
         invalidate();
     }
 
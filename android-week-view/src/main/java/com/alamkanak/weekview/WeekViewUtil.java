@@ -7,6 +7,8 @@ import java.util.Calendar;
  */
 public class WeekViewUtil {
 
+    private static final long DAY_IN_MILLIS = 1000L * 60 * 60 * 24;
+
 
     /////////////////////////////////////////////////////////////////
     //
@@ -66,6 +68,22 @@ public class WeekViewUtil {
                 ((dateOne.getTimeInMillis() + dateOne.getTimeZone().getOffset(dateOne.getTimeInMillis())) / (1000 * 60 * 60 * 24)));
     }
 
+    /**
+     * Returns the number of the day of the given date in its time zone, counted from 1970-01-01.
+     * Unlike {@link #isSameDay(Calendar, Calendar)} it allows comparing days as primitives.
+     *
+     * @param date the date
+     * @return the day index of the date
+     */
+    public static int getDayIndex(Calendar date) {
+        long millis = date.getTimeInMillis() + date.get(Calendar.ZONE_OFFSET) + date.get(Calendar.DST_OFFSET);
+        long days = millis / DAY_IN_MILLIS;
+        if (millis < 0 && days * DAY_IN_MILLIS != millis) {
+            days--;
+        }
+        return (int) days;
+    }
+
     /*
     * Returns the amount of minutes passed in the day before the time in the given date
     * @param date
@@ -27,31 +27,51 @@ package org.voidsink.anewjkuapp;
 
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.UriMatcher;
 import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
+import org.voidsink.anewjkuapp.base.BaseContentObserver;
 import org.voidsink.anewjkuapp.kusss.Course;
 import org.voidsink.anewjkuapp.kusss.KusssHelper;
 import org.voidsink.anewjkuapp.kusss.Term;
 
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CourseMap {
 
+    private static final Logger logger = LoggerFactory.getLogger(CourseMap.class);
+
+    private static final AtomicInteger sGeneration = new AtomicInteger();
+    private static volatile CourseMap sInstance;
+    private static BaseContentObserver sObserver;
+
+    // term and course id -> course
     private final Map<String, Course> map;
+    // course id -> course of the newest term
+    private final Map<String, Course> newest;
+    // false if courses couldn't be queried
+    private final boolean loaded;
 
+    @WorkerThread
     public CourseMap(@NonNull Context context) {
         this.map = new HashMap<>();
+        this.newest = new HashMap<>();
 
         ContentResolver cr = context.getContentResolver();
 
+        boolean loaded = false;
         try (Cursor c = cr.query(KusssContentContract.Course.CONTENT_URI,
                 KusssContentContract.Course.DB.getProjection(), null, null,
                 KusssContentContract.Course.COL_TERM + " DESC")) {
@@ -60,36 +80,77 @@ public class CourseMap {
                     try {
                         Course course = KusssHelper.createCourse(c);
                         this.map.put(KusssHelper.getCourseKey(course.getTerm(), course.getCourseId()), course);
+
+                        Course other = this.newest.get(course.getCourseId());
+                        if (other == null || course.getTerm().compareTo(other.getTerm()) > 0) {
+                            this.newest.put(course.getCourseId(), course);
+                        }
                     } catch (ParseException e) {
                         AnalyticsHelper.sendException(context, e, true);
                     }
                 }
+                loaded = true;
             }
+        } catch (Exception e) {
+            AnalyticsHelper.sendException(context, e, true);
         }
+        this.loaded = loaded;
     }
 
-    public Course getCourse(Term term, String courseId) {
-        Course course = this.map.get(KusssHelper.getCourseKey(term, courseId));
-        if (course != null) {
-            return course;
+    /**
+     * returns the shared course index, loads it if there is none or the courses changed since the
+     * last load, so don't call it on the main thread
+     */
+    @WorkerThread
+    public static CourseMap getInstance(@NonNull Context context) {
+        CourseMap instance = sInstance;
+        if (instance != null) {
+            return instance;
         }
+        synchronized (CourseMap.class) {
+            instance = sInstance;
+            if (instance != null) {
+                return instance;
+            }
 
-        List<Course> courses = new ArrayList<>();
-        for (Course tmp : this.map.values()) {
-            if (courseId.equals(tmp.getCourseId())) {
-                courses.add(tmp);
+            Context appContext = context.getApplicationContext();
+            if (sObserver == null) {
+                UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+                uriMatcher.addURI(KusssContentContract.AUTHORITY,
+                        KusssContentContract.Course.PATH_CONTENT_CHANGED, 0);
+
+                sObserver = new BaseContentObserver(new Handler(Looper.getMainLooper()), uriMatcher,
+                        selfChange -> invalidate());
+                appContext.getContentResolver().registerContentObserver(
+                        KusssContentContract.Course.CONTENT_CHANGED_URI, false, sObserver);
             }
-        }
 
-        if (courses.size() == 0) {
-            return null;
+            // don't publish the index if loading failed or courses changed while loading,
+            // the next call tries again
+            int generation = sGeneration.get();
+            instance = new CourseMap(appContext);
+            if (instance.loaded && generation == sGeneration.get()) {
+                sInstance = instance;
+            }
+            logger.debug("course index loaded: {} courses", instance.map.size());
+            return instance;
         }
+    }
 
-        Collections.sort(courses, (lhs, rhs) -> {
-            // sort courses by term desc
-            return rhs.getTerm().compareTo(lhs.getTerm());
-        });
-        return courses.get(0);
+    /**
+     * drops the shared course index, the next {@link #getInstance(Context)} reloads it
+     */
+    public static void invalidate() {
+        sGeneration.incrementAndGet();
+        sInstance = null;
+    }
+
+    public Course getCourse(Term term, String courseId) {
+        Course course = this.map.get(KusssHelper.getCourseKey(term, courseId));
+        if (course != null) {
+            return course;
+        }
+        return this.newest.get(courseId);
     }
 
     public ArrayList<Course> getCourses() {
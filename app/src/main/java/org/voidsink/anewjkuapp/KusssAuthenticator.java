@@ -42,6 +42,7 @@ import androidx.annotation.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.voidsink.anewjkuapp.activity.KusssAuthenticatorActivity;
+import org.voidsink.anewjkuapp.kusss.KusssFingerprints;
 import org.voidsink.anewjkuapp.kusss.KusssHandler;
 import org.voidsink.anewjkuapp.provider.KusssDatabaseHelper;
 import org.voidsink.anewjkuapp.utils.Consts;
@@ -204,6 +205,7 @@ public class KusssAuthenticator extends AbstractAccountAuthenticator {
 
         if (result.getBoolean(AccountManager.KEY_BOOLEAN_RESULT)) {
             KusssDatabaseHelper.dropUserData(mContext);
+            KusssFingerprints.clear(mContext);
         }
         return result;
     }
@@ -39,6 +39,8 @@ public interface KusssContentContract {
     Uri CONTENT_URI = Uri.parse(String.format("content://%1$s",
             AUTHORITY));
 
+    String PARAM_UPSERT = "upsert";
+
     interface Course {
         String PATH = "lva";
         String PATH_CONTENT_CHANGED = "lva_changed";
@@ -60,6 +62,8 @@ public interface KusssContentContract {
         String COL_SWS = "sws";
         String COL_CLASS_CODE = "code";
 
+        String[] NATURAL_KEY = new String[]{COL_TERM, COL_COURSEID};
+
         interface DB {
             static String[] getProjection() {
                 return new String[]{
@@ -108,6 +112,8 @@ public interface KusssContentContract {
         String COL_IS_REGISTERED = "registered";
         String COL_TITLE = "title";
 
+        String[] NATURAL_KEY = new String[]{COL_COURSEID, COL_TERM, COL_DTSTART};
+
         interface DB {
             static String[] getProjection() {
                 return new String[]{
@@ -158,6 +164,8 @@ public interface KusssContentContract {
         String COL_SWS = "sws";
         String COL_LVATYPE = "lvatype";
 
+        String[] NATURAL_KEY = new String[]{COL_CODE, COL_COURSEID, COL_DATE};
+
         interface DB {
             static String[] getProjection() {
                 return new String[]{
@@ -210,6 +218,8 @@ public interface KusssContentContract {
         String COL_DT_START = "dtStart";
         String COL_DT_END = "dtEnd";
 
+        String[] NATURAL_KEY = new String[]{COL_CURRICULUM_ID, COL_DT_START};
+
         interface DB {
             static String[] getProjection() {
                 return new String[]{
@@ -236,6 +246,15 @@ public interface KusssContentContract {
         }
     }
 
+    /**
+     * bulkInsert with this uri updates rows with the same NATURAL_KEY instead of inserting them again
+     */
+    static Uri asUpsert(Uri uri) {
+        return uri
+                .buildUpon()
+                .appendQueryParameter(PARAM_UPSERT, "true").build();
+    }
+
     static Uri asEventSyncAdapter(Uri uri, String account,
                                   String accountType) {
         return uri
@@ -54,6 +54,9 @@ public final class PreferenceHelper {
     public static final String PREF_SYNC_INTERVAL_KEY = "pref_key_sync_interval";
     private static final int PREF_SYNC_INTERVAL_DEFAULT = 85;
 
+    public static final String PREF_SYNC_PIPELINED_KEY = "pref_key_sync_pipelined";
+    private static final boolean PREF_SYNC_PIPELINED_DEFAULT = false;
+
     private static final String PREF_NOTIFY_CALENDAR_KEY = "pref_key_notify_calendar";
     private static final boolean PREF_NOTIFY_CALENDAR_DEFAULT = true;
 
@@ -125,6 +128,18 @@ public final class PreferenceHelper {
         }
     }
 
+    public static boolean getSyncPipelined(@NonNull Context context) {
+        SharedPreferences sp = PreferenceManager
+                .getDefaultSharedPreferences(context);
+        try {
+            return sp.getBoolean(PREF_SYNC_PIPELINED_KEY,
+                    PREF_SYNC_PIPELINED_DEFAULT);
+        } catch (Exception e) {
+            logger.error("Failure", e);
+            return PREF_SYNC_PIPELINED_DEFAULT;
+        }
+    }
+
     public static void applySyncInterval(@NonNull Context context) {
         Account mAccount = AppUtils.getAccount(context);
 
@@ -40,6 +40,7 @@ import org.voidsink.anewjkuapp.R;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
 import org.voidsink.anewjkuapp.base.ThemedActivity;
 import org.voidsink.anewjkuapp.fragment.SettingsFragment;
+import org.voidsink.anewjkuapp.kusss.KusssFingerprints;
 import org.voidsink.anewjkuapp.utils.AppUtils;
 import org.voidsink.anewjkuapp.utils.Consts;
 import org.voidsink.anewjkuapp.utils.UIUtils;
@@ -89,11 +90,20 @@ public class SettingsActivity extends ThemedActivity implements SharedPreference
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
         switch (key) {
             case PreferenceHelper.PREF_GET_NEW_EXAMS:
+                KusssFingerprints.clear(this);
                 AppUtils.triggerSync(this, true, Consts.ARG_WORKER_KUSSS_EXAMS);
                 break;
+            case PreferenceHelper.PREF_EXTENDED_CALENDAR_LVA:
+            case PreferenceHelper.PREF_EXTENDED_CALENDAR_EXAM:
+                // events have to be imported into another calendar
+                KusssFingerprints.clear(this);
+                break;
             case PreferenceHelper.PREF_SYNC_INTERVAL_KEY:
                 PreferenceHelper.applySyncInterval(this);
                 break;
+            case PreferenceHelper.PREF_SYNC_PIPELINED_KEY:
+                AppUtils.enableSync(this, true);
+                break;
             case PreferenceHelper.PREF_USE_LIGHT_THEME:
             case PreferenceHelper.PREF_OVERRIDE_THEME:
                 UIUtils.setDefaultNightMode(getApplicationContext());
@@ -26,21 +26,32 @@
 package org.voidsink.anewjkuapp.base;
 
 import android.accounts.Account;
+import android.content.ContentProviderClient;
 import android.content.ContentResolver;
+import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.RemoteException;
 
 import androidx.annotation.NonNull;
 import androidx.work.Data;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
+import org.voidsink.anewjkuapp.KusssContentContract;
+import org.voidsink.anewjkuapp.kusss.KusssHandler;
 import org.voidsink.anewjkuapp.notification.SyncNotification;
 import org.voidsink.anewjkuapp.utils.AppUtils;
+import org.voidsink.anewjkuapp.utils.ChunkedBatch;
 import org.voidsink.anewjkuapp.utils.Consts;
 
+import java.util.List;
+
 public abstract class BaseWorker extends Worker {
 
     private SyncNotification mSyncNotification = null;
+    private boolean mKusssSessionAcquired = false;
 
     protected BaseWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
         super(context, workerParams);
@@ -80,6 +91,58 @@ public abstract class BaseWorker extends Worker {
         }
     }
 
+    protected void updateNotificationProgress(int progress, int max) {
+        if (mSyncNotification != null) {
+            mSyncNotification.updateProgress(progress, max);
+        }
+    }
+
+    /**
+     * applies the batch chunk by chunk and shows the progress in the sync notification
+     *
+     * @throws OperationApplicationException if the worker was stopped before all chunks were applied
+     */
+    protected void applyBatch(@NonNull ContentProviderClient provider, @NonNull ChunkedBatch batch) throws RemoteException, OperationApplicationException {
+        boolean completed = batch.apply(provider, (applied, total) -> {
+            updateNotificationProgress(applied, total);
+            return !isStopped();
+        });
+        if (!completed) {
+            throw new OperationApplicationException("worker stopped");
+        }
+    }
+
+    /**
+     * inserts rows with {@link android.content.ContentProvider#bulkInsert(Uri, ContentValues[])},
+     * one call per chunk to stay below the binder transaction size limit
+     *
+     * @param upsert update rows with the same natural key instead of inserting them, see {@link KusssContentContract#asUpsert(Uri)}
+     */
+    protected void bulkInsert(@NonNull ContentProviderClient provider, @NonNull Uri uri, @NonNull List<ContentValues> values, boolean upsert) throws RemoteException {
+        if (upsert) {
+            uri = KusssContentContract.asUpsert(uri);
+        }
+        for (int start = 0; start < values.size(); start += ChunkedBatch.DEFAULT_CHUNK_SIZE) {
+            List<ContentValues> chunk = values.subList(start, Math.min(start + ChunkedBatch.DEFAULT_CHUNK_SIZE, values.size()));
+            provider.bulkInsert(uri, chunk.toArray(new ContentValues[0]));
+            updateNotificationProgress(start + chunk.size(), values.size());
+        }
+    }
+
+    protected boolean acquireKusssSession(@NonNull Account account) {
+        if (!mKusssSessionAcquired) {
+            mKusssSessionAcquired = KusssHandler.getInstance().acquireSession(getApplicationContext(), account);
+        }
+        return mKusssSessionAcquired;
+    }
+
+    protected void releaseKusssSession() {
+        if (mKusssSessionAcquired) {
+            mKusssSessionAcquired = false;
+            KusssHandler.getInstance().releaseSession(getApplicationContext());
+        }
+    }
+
     protected Result getSuccess() {
         return Result.success();
     }
@@ -0,0 +1,148 @@
+/*
+ *       ____.____  __.____ ___     _____
+ *      |    |    |/ _|    |   \   /  _  \ ______ ______
+ *      |    |      < |    |   /  /  /_\  \\____ \\____ \
+ *  /\__|    |    |  \|    |  /  /    |    \  |_> >  |_> >
+ *  \________|____|__ \______/   \____|__  /   __/|   __/
+ *                   \/                  \/|__|   |__|
+ *
+ *  Copyright (c) 2014-2020 Paul "Marunjar" Pretsch
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.voidsink.anewjkuapp.calendar;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.CalendarContract;
+import android.util.SparseIntArray;
+
+import androidx.annotation.WorkerThread;
+import androidx.core.graphics.ColorUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
+import org.voidsink.anewjkuapp.base.BaseContentObserver;
+import org.voidsink.anewjkuapp.base.ContentObserverListener;
+
+/**
+ * Event colors by calendar id, darkened until the event text is readable. The colors are read
+ * once in the background and read again after the calendars changed.
+ */
+public class CalendarColorCache implements ContentObserverListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(CalendarColorCache.class);
+
+    private static final double MIN_CONTRAST = 1.6;
+
+    private final Context mContext;
+    private final int mTextColor;
+    // base color -> event color for mTextColor
+    private final SparseIntArray mAdjusted = new SparseIntArray();
+    // calendar id -> event color, replaced as a whole
+    private volatile SparseIntArray mColors = new SparseIntArray();
+    private volatile boolean mStale = true;
+    private BaseContentObserver mObserver;
+
+    public CalendarColorCache(Context context, int textColor) {
+        this.mContext = context.getApplicationContext();
+        this.mTextColor = textColor;
+    }
+
+    public void register() {
+        if (mObserver == null) {
+            mObserver = new BaseContentObserver(new Handler(Looper.getMainLooper()), this);
+            mContext.getContentResolver().registerContentObserver(
+                    CalendarContract.Calendars.CONTENT_URI, true, mObserver);
+        }
+        // changes while unregistered are unknown
+        mStale = true;
+    }
+
+    public void unregister() {
+        if (mObserver != null) {
+            mContext.getContentResolver().unregisterContentObserver(mObserver);
+            mObserver = null;
+        }
+    }
+
+    @Override
+    public void onContentChanged(boolean selfChange) {
+        mStale = true;
+    }
+
+    /**
+     * reads the calendar colors if they changed since the last load, so don't call it on the main thread
+     */
+    @WorkerThread
+    public synchronized void load() {
+        if (!mStale) {
+            return;
+        }
+        mStale = false;
+
+        SparseIntArray colors = new SparseIntArray();
+        ContentResolver cr = mContext.getContentResolver();
+        try (Cursor c = cr.query(CalendarContract.Calendars.CONTENT_URI,
+                new String[]{
+                        CalendarContract.Calendars._ID,
+                        CalendarContract.Calendars.CALENDAR_COLOR}, null, null, null)) {
+            if (c != null) {
+                while (c.moveToNext()) {
+                    colors.put(c.getInt(0), getEventColor(c.getInt(1)));
+                }
+            }
+        } catch (Exception e) {
+            // keep the last colors, try again with the next load
+            mStale = true;
+            AnalyticsHelper.sendException(mContext, e, false);
+            return;
+        }
+        mColors = colors;
+
+        logger.debug("calendar colors loaded: {}", colors.size());
+    }
+
+    /**
+     * @return event color of the calendar, 0 if unknown
+     */
+    public int getColor(int calendarId) {
+        return mColors.get(calendarId);
+    }
+
+    private int getEventColor(int color) {
+        int index = mAdjusted.indexOfKey(color);
+        if (index >= 0) {
+            return mAdjusted.valueAt(index);
+        }
+
+        int result = color;
+        float[] hsv = new float[3];
+        Color.colorToHSV(result, hsv);
+        while (ColorUtils.calculateContrast(result, mTextColor) < MIN_CONTRAST && hsv[2] > 0) {
+            hsv[2] = Math.max(0f, hsv[2] - 0.033f); // darken
+            result = Color.HSVToColor(hsv);
+        }
+
+        mAdjusted.put(color, result);
+        return result;
+    }
+}
@@ -54,9 +54,11 @@ import org.voidsink.anewjkuapp.PreferenceHelper;
 import org.voidsink.anewjkuapp.R;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
 import org.voidsink.anewjkuapp.utils.AppUtils;
+import org.voidsink.anewjkuapp.utils.ChunkedBatch;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -115,6 +117,10 @@ public final class CalendarUtils {
     };
     public static final String EXTENDED_PROPERTY_NAME_KUSSS_ID = "kusssId";
     public static final String EXTENDED_PROPERTY_LOCATION_EXTRA = "locationExtra";
+    public static final String EXTENDED_PROPERTY_NAME_KUSSS_HASH = "kusssHash";
+
+    // stay well below SQLITE_MAX_VARIABLE_NUMBER (999) for IN (...) selections
+    private static final int EXTENDED_PROPERTIES_CHUNK_SIZE = 500;
 
     private static final Logger logger = LoggerFactory.getLogger(CalendarUtils.class);
 
@@ -432,26 +438,15 @@ public final class CalendarUtils {
                 Cursor c = loadEvents(provider, calUri, calId, new Date(deleteFrom));
                 if (c != null) {
                     try {
-                        ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+                        // get kusssIds from extended properties
+                        Map<String, String> kusssIds = getExtendedProperties(provider, getEventIds(c), EXTENDED_PROPERTY_NAME_KUSSS_ID);
+
+                        ChunkedBatch batch = new ChunkedBatch();
                         while (c.moveToNext()) {
                             long eventDTStart = c.getLong(CalendarUtils.COLUMN_EVENT_DTSTART);
                             if (eventDTStart > deleteFrom) {
                                 String eventId = c.getString(COLUMN_EVENT_ID);
-                                String eventKusssId = null;
-
-                                // get kusssId from extended properties
-                                try (Cursor c2 = provider.query(CalendarContract.ExtendedProperties.CONTENT_URI, CalendarUtils.EXTENDED_PROPERTIES_PROJECTION,
-                                        CalendarContract.ExtendedProperties.EVENT_ID + " = ?",
-                                        new String[]{eventId},
-                                        null)) {
-                                    if (c2 != null) {
-                                        while (c2.moveToNext()) {
-                                            if (c2.getString(1).contains(EXTENDED_PROPERTY_NAME_KUSSS_ID)) {
-                                                eventKusssId = c2.getString(2);
-                                            }
-                                        }
-                                    }
-                                }
+                                String eventKusssId = kusssIds.get(eventId);
 
                                 if (TextUtils.isEmpty(eventKusssId)) {
                                     eventKusssId = c.getString(COLUMN_EVENT_KUSSS_ID_LEGACY);
@@ -472,7 +467,7 @@ public final class CalendarUtils {
                         }
                         if (batch.size() > 0) {
                             logger.debug("Applying batch update");
-                            provider.applyBatch(batch);
+                            batch.apply(provider, null);
                             logger.debug("Notify resolver");
                         } else {
                             logger.warn("No batch operations found! Do nothing");
@@ -480,6 +475,8 @@ public final class CalendarUtils {
                     } catch (RemoteException | OperationApplicationException e) {
                         AnalyticsHelper.sendException(context, e, true);
                         return false;
+                    } finally {
+                        c.close();
                     }
                 }
             } finally {
@@ -494,6 +491,58 @@ public final class CalendarUtils {
         return true;
     }
 
+    /**
+     * collects the ids of all events of the cursor, the cursor is reset to its initial position afterwards
+     *
+     * @param c cursor with {@link #getEventProjection()}
+     * @return list of event ids
+     */
+    public static List<String> getEventIds(@NonNull Cursor c) {
+        List<String> eventIds = new ArrayList<>(c.getCount());
+        c.moveToPosition(-1);
+        while (c.moveToNext()) {
+            eventIds.add(c.getString(COLUMN_EVENT_ID));
+        }
+        c.moveToPosition(-1);
+        return eventIds;
+    }
+
+    /**
+     * loads the extended property with the given name for all events at once instead of querying each event separately
+     *
+     * @param provider calendar provider
+     * @param eventIds ids of events
+     * @param name     name of extended property
+     * @return map of event id to value of extended property
+     * @throws RemoteException of provider.query()
+     */
+    public static Map<String, String> getExtendedProperties(@NonNull ContentProviderClient provider, @NonNull List<String> eventIds, @NonNull String name) throws RemoteException {
+        Map<String, String> properties = new HashMap<>(eventIds.size());
+
+        for (int start = 0; start < eventIds.size(); start += EXTENDED_PROPERTIES_CHUNK_SIZE) {
+            List<String> chunk = eventIds.subList(start, Math.min(start + EXTENDED_PROPERTIES_CHUNK_SIZE, eventIds.size()));
+
+            String[] selectionArgs = new String[chunk.size() + 1];
+            selectionArgs[0] = name;
+            for (int i = 0; i < chunk.size(); i++) {
+                selectionArgs[i + 1] = chunk.get(i);
+            }
+
+            try (Cursor c = provider.query(CalendarContract.ExtendedProperties.CONTENT_URI, EXTENDED_PROPERTIES_PROJECTION,
+                    CalendarContract.ExtendedProperties.NAME + " = ? AND " +
+                            CalendarContract.ExtendedProperties.EVENT_ID + " IN (" + TextUtils.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                    selectionArgs,
+                    null)) {
+                if (c != null) {
+                    while (c.moveToNext()) {
+                        properties.put(c.getString(0), c.getString(2));
+                    }
+                }
+            }
+        }
+        return properties;
+    }
+
     private static Cursor loadEvents(ContentProviderClient mProvider, Uri calUri, String calendarId, Date fromDate) {
         // The ID of the recurring event whose instances you are searching for in the Instances table
         String selection = CalendarContract.Events
@@ -0,0 +1,133 @@
+/*
+ *       ____.____  __.____ ___     _____
+ *      |    |    |/ _|    |   \   /  _  \ ______ ______
+ *      |    |      < |    |   /  /  /_\  \\____ \\____ \
+ *  /\__|    |    |  \|    |  /  /    |    \  |_> >  |_> >
+ *  \________|____|__ \______/   \____|__  /   __/|   __/
+ *                   \/                  \/|__|   |__|
+ *
+ *  Copyright (c) 2014-2020 Paul "Marunjar" Pretsch
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.voidsink.anewjkuapp.calendar;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Immutable projection of a VEVENT with the values used by the calendar merge. Times are stored
+ * as millis, texts are trimmed and interned once, so comparing events needs no property lookups.
+ */
+public final class ICalEvent {
+
+    // 64 bit FNV-1a
+    private static final long HASH_OFFSET = 0xcbf29ce484222325L;
+    private static final long HASH_PRIME = 0x100000001b3L;
+
+    private final String mUid;
+    private final long mDtStart;
+    private final long mDtEnd;
+    private final String mTitle;
+    private final String mLocation;
+    private final String mDescription;
+    private final long mContentHash;
+
+    public ICalEvent(String uid, long dtStart, long dtEnd, String title, String location, String description) {
+        this.mUid = uid;
+        this.mDtStart = dtStart;
+        this.mDtEnd = dtEnd;
+        this.mTitle = normalize(title);
+        this.mLocation = normalize(location);
+        this.mDescription = normalize(description);
+        this.mContentHash = computeContentHash();
+    }
+
+    /**
+     * stable over app restarts, unlike {@link Object#hashCode()} of most types
+     */
+    private long computeContentHash() {
+        long hash = HASH_OFFSET;
+        hash = (hash ^ mDtStart) * HASH_PRIME;
+        hash = (hash ^ mDtEnd) * HASH_PRIME;
+        for (String text : new String[]{mTitle, mLocation, mDescription}) {
+            for (int i = 0; i < text.length(); i++) {
+                hash = (hash ^ text.charAt(i)) * HASH_PRIME;
+            }
+            // separate texts, "ab" + "c" must differ from "a" + "bc"
+            hash = (hash ^ 0x10000) * HASH_PRIME;
+        }
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * titles, locations and descriptions repeat for every date of a course
+     */
+    @NonNull
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().intern();
+    }
+
+    /**
+     * @return copy with changed title and description
+     */
+    public ICalEvent withText(String title, String description) {
+        return new ICalEvent(mUid, mDtStart, mDtEnd, title, mLocation, description);
+    }
+
+    public String getUid() {
+        return mUid;
+    }
+
+    public long getDtStart() {
+        return mDtStart;
+    }
+
+    public long getDtEnd() {
+        return mDtEnd;
+    }
+
+    @NonNull
+    public String getTitle() {
+        return mTitle;
+    }
+
+    @NonNull
+    public String getLocation() {
+        return mLocation;
+    }
+
+    @NonNull
+    public String getDescription() {
+        return mDescription;
+    }
+
+    /**
+     * @return hash of start, end, title, location and description
+     */
+    public long getContentHash() {
+        return mContentHash;
+    }
+
+    public boolean startsBetween(long from, long to) {
+        return mDtStart >= from && mDtStart <= to;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return mUid + ": " + mTitle;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ *       ____.____  __.____ ___     _____
+ *      |    |    |/ _|    |   \   /  _  \ ______ ______
+ *      |    |      < |    |   /  /  /_\  \\____ \\____ \
+ *  /\__|    |    |  \|    |  /  /    |    \  |_> >  |_> >
+ *  \________|____|__ \______/   \____|__  /   __/|   __/
+ *                   \/                  \/|__|   |__|
+ *
+ *  Copyright (c) 2014-2020 Paul "Marunjar" Pretsch
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.voidsink.anewjkuapp.calendar;
+
+import android.text.format.DateUtils;
+
+import net.fortuna.ical4j.data.CalendarParserImpl;
+import net.fortuna.ical4j.data.ContentHandler;
+import net.fortuna.ical4j.data.ParserException;
+import net.fortuna.ical4j.data.UnfoldingReader;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.Date;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.Parameter;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.TimeZone;
+import net.fortuna.ical4j.model.TimeZoneRegistry;
+import net.fortuna.ical4j.model.parameter.Value;
+import net.fortuna.ical4j.util.Strings;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the VEVENT components of an iCal feed directly from a stream. Unlike
+ * {@link net.fortuna.ical4j.data.CalendarBuilder} no {@link net.fortuna.ical4j.model.Calendar} is
+ * built, each event is passed to the {@link EventHandler} as {@link ICalEvent} as soon as it is
+ * complete.
+ */
+public class ICalEventParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(ICalEventParser.class);
+
+    public interface EventHandler {
+        void onEvent(ICalEvent event);
+    }
+
+    private final TimeZoneRegistry mRegistry;
+
+    /**
+     * @param registry registry to resolve TZID parameters, see {@link net.fortuna.ical4j.data.CalendarBuilder#getRegistry()}
+     */
+    public ICalEventParser(TimeZoneRegistry registry) {
+        this.mRegistry = registry;
+    }
+
+    /**
+     * parses the stream, an empty stream contains no events
+     *
+     * @param in      iCal data, not closed by this method
+     * @param charset charset of the stream
+     * @param handler receives all VEVENTs
+     * @throws IOException     if reading fails
+     * @throws ParserException if the data is no valid iCal
+     */
+    public void parse(InputStream in, Charset charset, EventHandler handler) throws IOException, ParserException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset));
+
+        reader.mark(1);
+        if (reader.read() < 0) {
+            return;
+        }
+        reader.reset();
+
+        new CalendarParserImpl().parse(new UnfoldingReader(reader, true), new VEventContentHandler(handler));
+    }
+
+    // dur-value of RFC 5545, e.g. P1W, PT1H30M or -P1DT2H
+    private static final Pattern DURATION_PATTERN = Pattern.compile("([+-])?P(?:(\\d+)W)?(?:(\\d+)D)?(?:T(?:(\\d+)H)?(?:(\\d+)M)?(?:(\\d+)S)?)?");
+
+    private class VEventContentHandler implements ContentHandler {
+
+        private final EventHandler mHandler;
+
+        private boolean mInEvent = false;
+        // depth of components nested in the current VEVENT, e.g. VALARM
+        private int mNested = 0;
+
+        private String mUid;
+        private Date mDtStart;
+        private Date mDtEnd;
+        private String mDuration;
+        private String mSummary;
+        private String mLocation;
+        private String mDescription;
+
+        private String mProperty = null;
+        private String mValue = null;
+        private String mTzId = null;
+        private boolean mDateOnly = false;
+
+        private VEventContentHandler(EventHandler handler) {
+            this.mHandler = handler;
+        }
+
+        @Override
+        public void startCalendar() {
+        }
+
+        @Override
+        public void endCalendar() {
+        }
+
+        @Override
+        public void startComponent(String name) {
+            if (mInEvent) {
+                mNested++;
+            } else if (Component.VEVENT.equals(name)) {
+                mInEvent = true;
+                mUid = null;
+                mDtStart = null;
+                mDtEnd = null;
+                mDuration = null;
+                mSummary = null;
+                mLocation = null;
+                mDescription = null;
+            }
+        }
+
+        @Override
+        public void endComponent(String name) {
+            if (!mInEvent) {
+                return;
+            }
+            if (mNested > 0) {
+                mNested--;
+            } else if (Component.VEVENT.equals(name)) {
+                mInEvent = false;
+                if (mUid == null || mDtStart == null) {
+                    logger.warn("incomplete event ignored: {}", mUid);
+                    return;
+                }
+                long dtEnd = mDtStart.getTime();
+                if (mDtEnd != null) {
+                    dtEnd = mDtEnd.getTime();
+                } else if (mDuration != null) {
+                    try {
+                        dtEnd = addDuration(mDtStart, mDuration);
+                    } catch (ParseException e) {
+                        logger.warn("invalid duration {} of {}", mDuration, mUid);
+                    }
+                } else if (!(mDtStart instanceof DateTime)) {
+                    // an event on a date lasts that day, like in ical4j
+                    dtEnd = mDtStart.getTime() + DateUtils.DAY_IN_MILLIS;
+                }
+                mHandler.onEvent(new ICalEvent(mUid, mDtStart.getTime(), dtEnd,
+                        mSummary, mLocation, mDescription));
+            }
+        }
+
+        @Override
+        public void startProperty(String name) {
+            mProperty = (mInEvent && mNested == 0) ? name : null;
+            mValue = null;
+            mTzId = null;
+            mDateOnly = false;
+        }
+
+        @Override
+        public void propertyValue(String value) {
+            if (mProperty != null) {
+                mValue = value;
+            }
+        }
+
+        @Override
+        public void parameter(String name, String value) {
+            if (mProperty == null) {
+                return;
+            }
+            if (Parameter.TZID.equalsIgnoreCase(name)) {
+                mTzId = value;
+            } else if (Parameter.VALUE.equalsIgnoreCase(name)) {
+                mDateOnly = Value.DATE.getValue().equalsIgnoreCase(value);
+            }
+        }
+
+        @Override
+        public void endProperty(String name) throws ParseException {
+            if (mProperty == null || mValue == null) {
+                return;
+            }
+            switch (mProperty.toUpperCase(Locale.ROOT)) {
+                case Property.UID:
+                    mUid = mValue;
+                    break;
+                case Property.SUMMARY:
+                    mSummary = Strings.unescape(mValue);
+                    break;
+                case Property.DESCRIPTION:
+                    mDescription = Strings.unescape(mValue);
+                    break;
+                case Property.LOCATION:
+                    mLocation = Strings.unescape(mValue);
+                    break;
+                case Property.DTSTART:
+                    mDtStart = parseDate();
+                    break;
+                case Property.DTEND:
+                    mDtEnd = parseDate();
+                    break;
+                case Property.DURATION:
+                    mDuration = mValue;
+                    break;
+                default:
+                    // not needed for merge
+                    break;
+            }
+            mProperty = null;
+        }
+
+        /**
+         * end of an event without DTEND, weeks and days are added as calendar days in the time
+         * zone of start, like ical4j did with VEvent.getEndDate()
+         */
+        private long addDuration(Date start, String duration) throws ParseException {
+            Matcher matcher = DURATION_PATTERN.matcher(duration.trim().toUpperCase(Locale.ROOT));
+            if (!matcher.matches()) {
+                throw new ParseException(duration, 0);
+            }
+            int sign = "-".equals(matcher.group(1)) ? -1 : 1;
+
+            java.util.TimeZone timeZone = java.util.TimeZone.getTimeZone("UTC");
+            if (start instanceof DateTime && !((DateTime) start).isUtc()) {
+                timeZone = ((DateTime) start).getTimeZone() != null ? ((DateTime) start).getTimeZone() : java.util.TimeZone.getDefault();
+            }
+
+            Calendar cal = Calendar.getInstance(timeZone);
+            cal.setTimeInMillis(start.getTime());
+            cal.add(Calendar.DAY_OF_MONTH, sign * (7 * parseDurationPart(matcher.group(2)) + parseDurationPart(matcher.group(3))));
+            cal.add(Calendar.HOUR_OF_DAY, sign * parseDurationPart(matcher.group(4)));
+            cal.add(Calendar.MINUTE, sign * parseDurationPart(matcher.group(5)));
+            cal.add(Calendar.SECOND, sign * parseDurationPart(matcher.group(6)));
+            return cal.getTimeInMillis();
+        }
+
+        private int parseDurationPart(String value) {
+            return value != null ? Integer.parseInt(value) : 0;
+        }
+
+        private Date parseDate() throws ParseException {
+            if (mDateOnly) {
+                return new Date(mValue);
+            }
+            TimeZone timeZone = null;
+            if (mTzId != null && mRegistry != null) {
+                timeZone = mRegistry.getTimeZone(mTzId);
+                if (timeZone == null) {
+                    logger.warn("unknown TZID {}, use local time", mTzId);
+                }
+            }
+            return new DateTime(mValue, timeZone);
+        }
+    }
+}
@@ -27,6 +27,7 @@ package org.voidsink.anewjkuapp.dashclock;
 
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.text.format.DateUtils;
 
 import androidx.preference.PreferenceManager;
 
@@ -38,18 +39,16 @@ import org.slf4j.LoggerFactory;
 import org.voidsink.anewjkuapp.R;
 import org.voidsink.anewjkuapp.activity.MainActivity;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
-import org.voidsink.anewjkuapp.mensa.ChoiceMenuLoader;
-import org.voidsink.anewjkuapp.mensa.ClassicMenuLoader;
 import org.voidsink.anewjkuapp.mensa.IDay;
 import org.voidsink.anewjkuapp.mensa.IMensa;
 import org.voidsink.anewjkuapp.mensa.IMenu;
-import org.voidsink.anewjkuapp.mensa.KHGMenuLoader;
-import org.voidsink.anewjkuapp.mensa.RaabMenuLoader;
-import org.voidsink.anewjkuapp.mensa.TagestellerMenuLoader;
+import org.voidsink.anewjkuapp.mensa.MensaRepository;
+import org.voidsink.anewjkuapp.mensa.Mensen;
 import org.voidsink.anewjkuapp.utils.Consts;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
@@ -58,6 +57,8 @@ public class MensaDashclockExtension extends DashClockExtension {
 
     private static final Logger logger = LoggerFactory.getLogger(MensaDashclockExtension.class);
 
+    private static final long LOAD_TIMEOUT = 10 * DateUtils.SECOND_IN_MILLIS;
+
     @Override
     protected void onUpdateData(int reason) {
         boolean mShowMenu = false;
@@ -100,27 +101,26 @@ public class MensaDashclockExtension extends DashClockExtension {
         logger.info("onUpdateData: {}, {} - {} ({})", reason, mFromTime, mToTime, mNow);
 
         if (mShowAlays || (mNow >= mFromTime && mNow <= mToTime)) {
-            List<IMensa> mensaList = new ArrayList<>();
+            List<String> mensaKeys = new ArrayList<>();
 
             if (sp.getBoolean("pref_key_dashclock_ext_mensa_classic", false)) {
-                mensaList.add(new ClassicMenuLoader()
-                        .getMensa(getApplicationContext()));
-                mensaList.add(new TagestellerMenuLoader()
-                        .getMensa(getApplicationContext()));
+                mensaKeys.add(Mensen.MENSA_CLASSIC);
+                mensaKeys.add(Mensen.MENSA_TAGESTELLER);
             }
             if (sp.getBoolean("pref_key_dashclock_ext_mensa_choice", false)) {
-                mensaList.add(new ChoiceMenuLoader()
-                        .getMensa(getApplicationContext()));
+                mensaKeys.add(Mensen.MENSA_CHOICE);
             }
             if (sp.getBoolean("pref_key_dashclock_ext_mensa_khg", false)) {
-                mensaList.add(new KHGMenuLoader()
-                        .getMensa(getApplicationContext()));
+                mensaKeys.add(Mensen.MENSA_KHG);
             }
             if (sp.getBoolean("pref_key_dashclock_ext_mensa_raab", false)) {
-                mensaList.add(new RaabMenuLoader()
-                        .getMensa(getApplicationContext()));
+                mensaKeys.add(Mensen.MENSA_RAAB);
             }
 
+            // load in parallel, mensen missing the timeout are shown with the next update
+            Collection<IMensa> mensaList = MensaRepository.getMensen(getApplicationContext(),
+                    mensaKeys, LOAD_TIMEOUT, null).values();
+
             for (IMensa mensa : mensaList) {
                 if (mensa != null && !mensa.isEmpty()) {
                     // get menu for today
@@ -29,15 +29,13 @@ import android.accounts.Account;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.Color;
 import android.graphics.RectF;
 import android.graphics.drawable.LayerDrawable;
 import android.os.Build;
 import android.os.Bundle;
 import android.provider.CalendarContract;
 import android.text.format.DateUtils;
-import android.util.SparseArray;
-import android.util.SparseIntArray;
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -47,9 +45,7 @@ import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.graphics.ColorUtils;
 import androidx.loader.app.LoaderManager;
-import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
 
 import com.alamkanak.weekview.DateTimeInterpreter;
@@ -60,6 +56,9 @@ import com.alamkanak.weekview.WeekViewLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.voidsink.anewjkuapp.R;
+import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
+import org.voidsink.anewjkuapp.base.BaseAsyncTaskLoader;
+import org.voidsink.anewjkuapp.calendar.CalendarColorCache;
 import org.voidsink.anewjkuapp.calendar.CalendarUtils;
 import org.voidsink.anewjkuapp.utils.AppUtils;
 import org.voidsink.anewjkuapp.utils.Consts;
@@ -69,19 +68,24 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 
 public class CalendarFragment2 extends CalendarPermissionFragment implements
-        WeekView.EventClickListener, WeekView.EventLongPressListener, LoaderManager.LoaderCallbacks<Cursor> {
+        WeekView.EventClickListener, WeekView.EventLongPressListener, LoaderManager.LoaderCallbacks<List<WeekViewEvent>> {
 
     private static final Logger logger = LoggerFactory.getLogger(CalendarFragment2.class);
 
     private static final String ARG_CAL_LOAD_NOW = "CLN";
     private static final String ARG_CAL_LOAD_THEN = "CLT";
+    // loaded periods are the visible one, its neighbours and one prefetched in scroll direction
+    private static final int MAX_LOADED_PERIODS = 4;
+    private static final int MAX_CACHED_PERIODS = 7;
     private WeekView mWeekView;
     private final MyWeekViewLoader mWeekViewLoader = new MyWeekViewLoader();
+    private CalendarColorCache mColorCache;
 
     @Override
     @Nullable
@@ -108,6 +112,8 @@ public class CalendarFragment2 extends CalendarPermissionFragment implements
         // Set formatter for Date/Time
         mWeekView.setDateTimeInterpreter(new CalendarDateTimeInterpreter(getContext()));
 
+        mColorCache = new CalendarColorCache(requireContext(), mWeekView.getEventTextColor());
+
         mWeekViewLoader.setDaysInPeriod(mWeekView.getNumberOfVisibleDays() * 4);
         mWeekView.setWeekViewLoader(mWeekViewLoader);
 
@@ -200,9 +206,18 @@ public class CalendarFragment2 extends CalendarPermissionFragment implements
     public void onStart() {
         super.onStart();
 
+        mColorCache.register();
+
         loadData(mWeekView.getFirstVisibleDay());
     }
 
+    @Override
+    public void onStop() {
+        super.onStop();
+
+        mColorCache.unregister();
+    }
+
     @Override
     public void onPause() {
         super.onPause();
@@ -214,6 +229,8 @@ public class CalendarFragment2 extends CalendarPermissionFragment implements
         if (date != null) {
             int periodIndex = (int) mWeekViewLoader.toWeekViewPeriodIndex(date);
 
+            mWeekViewLoader.retainEvents(periodIndex - 1, periodIndex + 1);
+
             mWeekViewLoader.loadPeriod(periodIndex - 1, true);
             mWeekViewLoader.loadPeriod(periodIndex, true);
             mWeekViewLoader.loadPeriod(periodIndex + 1, true);
@@ -238,160 +255,72 @@ public class CalendarFragment2 extends CalendarPermissionFragment implements
 
     @NonNull
     @Override
-    public Loader<Cursor> onCreateLoader(int id, @Nullable Bundle args) {
-
-        Account mAccount = AppUtils.getAccount(getContext());
-
-        String calIDLva = CalendarUtils.getCalIDByName(getContext(),
-                mAccount, CalendarUtils.ARG_CALENDAR_COURSE, true);
-        String calIDExam = CalendarUtils.getCalIDByName(getContext(),
-                mAccount, CalendarUtils.ARG_CALENDAR_EXAM, true);
-
-        if (calIDLva == null) {
-            logger.warn("cannot load courses, calendar not found");
-            calIDLva = "";
-        }
-        if (calIDExam == null) {
-            logger.warn("cannot load exams, calendar not found");
-            calIDExam = "";
-        }
-
-        return new CursorLoader(requireContext(), CalendarContract.Events.CONTENT_URI,
-                CalendarUtils.getEventProjection(),
-                "("
-                        + CalendarContract.Events
-                        .CALENDAR_ID
-                        + " = ? or "
-                        + CalendarContract.Events
-                        .CALENDAR_ID + " = ? ) and "
-                        + CalendarContract.Events.DTSTART
-                        + " >= ? and "
-                        + CalendarContract.Events.DTSTART
-                        + " <= ? and "
-                        + CalendarContract.Events.DELETED
-                        + " != 1",
-                new String[]{calIDExam, calIDLva,
-                        Long.toString(args.getLong(ARG_CAL_LOAD_NOW)), Long.toString(args.getLong(ARG_CAL_LOAD_THEN))},
-                CalendarContract.Events.DTSTART + " ASC");
+    public Loader<List<WeekViewEvent>> onCreateLoader(int id, @Nullable Bundle args) {
+        return new PeriodLoader(requireContext(), mColorCache,
+                args.getLong(ARG_CAL_LOAD_NOW), args.getLong(ARG_CAL_LOAD_THEN));
     }
 
     @Override
-    public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor data) {
-        ArrayList<WeekViewEvent> events = mWeekViewLoader.getEvents(loader.getId());
-        events.clear();
-
-        Account mAccount = AppUtils.getAccount(getContext());
-        if (mAccount != null) {
-            // fetch calendar colors
-            final SparseIntArray mColors = new SparseIntArray();
-            ContentResolver cr = requireContext().getContentResolver();
-            try (Cursor cursor = cr.query(CalendarContract.Calendars.CONTENT_URI,
-                    new String[]{
-                            CalendarContract.Calendars._ID,
-                            CalendarContract.Calendars
-                                    .CALENDAR_COLOR}, null, null, null)) {
-                if (cursor != null) {
-                    while (cursor.moveToNext()) {
-                        int color = cursor.getInt(1);
-
-                        double lastContrast = ColorUtils.calculateContrast(color, mWeekView.getEventTextColor());
-
-                        while (lastContrast < 1.6) {
-                            float[] hsv = new float[3];
-
-                            Color.colorToHSV(color, hsv);
-                            hsv[2] = Math.max(0f, hsv[2] - 0.033f); // darken
-                            color = Color.HSVToColor(hsv);
-
-                            lastContrast = ColorUtils.calculateContrast(color, mWeekView.getEventTextColor());
-
-                            if (hsv[2] == 0) break;
-                        }
-
-                        mColors.put(cursor.getInt(0), color);
-                    }
-                    cursor.close();
-                }
-            }
-
-
-            if (data != null) {
-                data.moveToFirst();
-                data.moveToPrevious();
-                while (data.moveToNext()) {
-
-                    boolean allDay = data.getInt(CalendarUtils.COLUMN_EVENT_ALL_DAY) == 1;
-
-                    Calendar startTime = Calendar.getInstance();
-                    if (allDay) {
-                        startTime.setTimeZone(TimeZone.getTimeZone("UTC"));
-                    }
-                    startTime.setTimeInMillis(data.getLong(CalendarUtils.COLUMN_EVENT_DTSTART));
-
-                    Calendar endTime = Calendar.getInstance();
-                    if (allDay) {
-                        endTime.setTimeZone(TimeZone.getTimeZone("UTC"));
-                    }
-                    endTime.setTimeInMillis(data.getLong(CalendarUtils.COLUMN_EVENT_DTEND));
-                    if (allDay && endTime.getTimeInMillis() % DateUtils.DAY_IN_MILLIS == 0) {
-                        endTime.add(Calendar.MILLISECOND, -1);
-                    }
-
-                    WeekViewEvent event = new WeekViewEvent(data.getString(CalendarUtils.COLUMN_EVENT_ID),
-                            data.getString(CalendarUtils.COLUMN_EVENT_TITLE),
-                            data.getString(CalendarUtils.COLUMN_EVENT_LOCATION),
-                            startTime,
-                            endTime,
-                            allDay);
-
-                    event.setColor(mColors.get(data.getInt(CalendarUtils.COLUMN_EVENT_CAL_ID)));
-
-                    events.add(event);
-                }
-            }
-        }
+    public void onLoadFinished(@NonNull Loader<List<WeekViewEvent>> loader, List<WeekViewEvent> data) {
+        mWeekViewLoader.putEvents(loader.getId(), data);
 
         mWeekView.notifyDatasetChanged();
     }
 
     @Override
-    public void onLoaderReset(@NonNull Loader<Cursor> loader) {
-        mWeekViewLoader.removeEvents(loader.getId());
+    public void onLoaderReset(@NonNull Loader<List<WeekViewEvent>> loader) {
+        // keep the events of the period cached, they are shown until it is loaded again
     }
 
     private class MyWeekViewLoader implements WeekViewLoader, WeekView.ScrollListener {
 
         private int mDaysInPeriod = 7;
-        private final SparseArray<ArrayList<WeekViewEvent>> mEvents;
+        private final LruCache<Integer, List<WeekViewEvent>> mEvents;
         private final ArrayList<Integer> mLastLoadedPeriods;
+        private final Calendar mToday = Calendar.getInstance();
         private int mLastPeriodIndex = 0;
 
         public MyWeekViewLoader() {
             mLastLoadedPeriods = new ArrayList<>();
-            mEvents = new SparseArray<>();
+            mEvents = new LruCache<>(MAX_CACHED_PERIODS);
         }
 
         public void setDaysInPeriod(int daysInPeriod) {
             mDaysInPeriod = daysInPeriod;
         }
 
-        public ArrayList<WeekViewEvent> getEvents(int periodIndex) {
-            ArrayList<WeekViewEvent> events = mEvents.get(periodIndex);
+        public List<WeekViewEvent> getEvents(int periodIndex) {
+            List<WeekViewEvent> events = mEvents.get(periodIndex);
             if (events == null) {
-                events = new ArrayList<>();
+                return Collections.emptyList();
+            }
+            return events;
+        }
+
+        public void putEvents(int periodIndex, List<WeekViewEvent> events) {
+            if (events != null) {
                 mEvents.put(periodIndex, events);
+            } else {
+                mEvents.remove(periodIndex);
             }
-            return mEvents.get(periodIndex);
         }
 
-        public void removeEvents(int periodIndex) {
-            mEvents.remove(periodIndex);
+        /**
+         * drops cached events of all periods except the given, the given are shown until they are reloaded
+         */
+        public void retainEvents(int firstPeriodIndex, int lastPeriodIndex) {
+            for (Integer periodIndex : mEvents.snapshot().keySet()) {
+                if (periodIndex < firstPeriodIndex || periodIndex > lastPeriodIndex) {
+                    mEvents.remove(periodIndex);
+                }
+            }
         }
 
         @Override
         public double toWeekViewPeriodIndex(Calendar instance) {
-
-            Calendar now = Calendar.getInstance();
+            // called by WeekView on every frame, reuse the calendar
+            Calendar now = mToday;
+            now.setTimeInMillis(System.currentTimeMillis());
             now.set(Calendar.HOUR_OF_DAY, 0);
             now.set(Calendar.MINUTE, 0);
             now.set(Calendar.SECOND, 0);
@@ -451,7 +380,7 @@ public class CalendarFragment2 extends CalendarPermissionFragment implements
                     }
                 }
 
-                while (mLastLoadedPeriods.size() > 3) {
+                while (mLastLoadedPeriods.size() > MAX_LOADED_PERIODS) {
                     int removed = mLastLoadedPeriods.remove(mLastLoadedPeriods.size() - 1);
                     LoaderManager.getInstance(CalendarFragment2.this).destroyLoader(removed);
                 }
@@ -463,11 +392,16 @@ public class CalendarFragment2 extends CalendarPermissionFragment implements
             int periodIndex = (int) toWeekViewPeriodIndex(newFirstVisibleDay);
 
             if (oldFirstVisibleDay == null || mLastPeriodIndex != periodIndex) {
+                int direction = Integer.signum(periodIndex - mLastPeriodIndex);
                 mLastPeriodIndex = periodIndex;
 
                 loadPeriod(periodIndex - 1, false);
                 loadPeriod(periodIndex, false);
                 loadPeriod(periodIndex + 1, false);
+                if (oldFirstVisibleDay != null && direction != 0) {
+                    // prefetch in scroll direction
+                    loadPeriod(periodIndex + 2 * direction, false);
+                }
             }
         }
 
@@ -481,6 +415,100 @@ public class CalendarFragment2 extends CalendarPermissionFragment implements
         }
     }
 
+    private static class PeriodLoader extends BaseAsyncTaskLoader<List<WeekViewEvent>> {
+
+        private final CalendarColorCache mColorCache;
+        private final long mFrom;
+        private final long mTo;
+
+        PeriodLoader(Context context, CalendarColorCache colorCache, long from, long to) {
+            super(context);
+
+            this.mColorCache = colorCache;
+            this.mFrom = from;
+            this.mTo = to;
+        }
+
+        @Override
+        public List<WeekViewEvent> loadInBackground() {
+            final Context context = getContext();
+
+            Account account = AppUtils.getAccount(context);
+            if (account == null) {
+                return Collections.emptyList();
+            }
+
+            String calIDLva = CalendarUtils.getCalIDByName(context,
+                    account, CalendarUtils.ARG_CALENDAR_COURSE, true);
+            String calIDExam = CalendarUtils.getCalIDByName(context,
+                    account, CalendarUtils.ARG_CALENDAR_EXAM, true);
+
+            if (calIDLva == null) {
+                logger.warn("cannot load courses, calendar not found");
+                calIDLva = "";
+            }
+            if (calIDExam == null) {
+                logger.warn("cannot load exams, calendar not found");
+                calIDExam = "";
+            }
+
+            mColorCache.load();
+
+            List<WeekViewEvent> events = new ArrayList<>();
+            final TimeZone utc = TimeZone.getTimeZone("UTC");
+
+            ContentResolver cr = context.getContentResolver();
+            try (Cursor c = cr.query(CalendarContract.Events.CONTENT_URI,
+                    CalendarUtils.getEventProjection(),
+                    "("
+                            + CalendarContract.Events
+                            .CALENDAR_ID
+                            + " = ? or "
+                            + CalendarContract.Events
+                            .CALENDAR_ID + " = ? ) and "
+                            + CalendarContract.Events.DTSTART
+                            + " >= ? and "
+                            + CalendarContract.Events.DTSTART
+                            + " <= ? and "
+                            + CalendarContract.Events.DELETED
+                            + " != 1",
+                    new String[]{calIDExam, calIDLva,
+                            Long.toString(mFrom), Long.toString(mTo)},
+                    CalendarContract.Events.DTSTART + " ASC")) {
+                if (c != null) {
+                    while (c.moveToNext()) {
+                        boolean allDay = c.getInt(CalendarUtils.COLUMN_EVENT_ALL_DAY) == 1;
+
+                        Calendar startTime = allDay ? Calendar.getInstance(utc) : Calendar.getInstance();
+                        startTime.setTimeInMillis(c.getLong(CalendarUtils.COLUMN_EVENT_DTSTART));
+
+                        Calendar endTime = allDay ? Calendar.getInstance(utc) : Calendar.getInstance();
+                        endTime.setTimeInMillis(c.getLong(CalendarUtils.COLUMN_EVENT_DTEND));
+                        if (allDay && endTime.getTimeInMillis() % DateUtils.DAY_IN_MILLIS == 0) {
+                            endTime.add(Calendar.MILLISECOND, -1);
+                        }
+
+                        WeekViewEvent event = new WeekViewEvent(c.getString(CalendarUtils.COLUMN_EVENT_ID),
+                                c.getString(CalendarUtils.COLUMN_EVENT_TITLE),
+                                c.getString(CalendarUtils.COLUMN_EVENT_LOCATION),
+                                startTime,
+                                endTime,
+                                allDay);
+
+                        event.setColor(mColorCache.getColor(c.getInt(CalendarUtils.COLUMN_EVENT_CAL_ID)));
+
+                        events.add(event);
+                    }
+                }
+            } catch (SecurityException e) {
+                // calendar permission was revoked
+                AnalyticsHelper.sendException(context, e, false);
+            }
+
+            return Collections.unmodifiableList(events);
+        }
+    }
+
     private static class CalendarDateTimeInterpreter implements DateTimeInterpreter {
 
         private final DateFormat mDateFormat;
@@ -25,6 +25,8 @@
 
 package org.voidsink.anewjkuapp.fragment;
 
+import android.content.ContentResolver;
+import android.content.Context;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.os.Bundle;
@@ -38,7 +40,6 @@ import android.view.ViewGroup;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.loader.app.LoaderManager;
-import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -49,6 +50,7 @@ import org.voidsink.anewjkuapp.ExamListExam;
 import org.voidsink.anewjkuapp.KusssContentContract;
 import org.voidsink.anewjkuapp.R;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
+import org.voidsink.anewjkuapp.base.BaseAsyncTaskLoader;
 import org.voidsink.anewjkuapp.base.BaseContentObserver;
 import org.voidsink.anewjkuapp.base.BaseFragment;
 import org.voidsink.anewjkuapp.base.ContentObserverListener;
@@ -60,7 +62,7 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
 
-public class ExamFragment extends BaseFragment implements ContentObserverListener, LoaderManager.LoaderCallbacks<Cursor> {
+public class ExamFragment extends BaseFragment implements ContentObserverListener, LoaderManager.LoaderCallbacks<List<ExamListExam>> {
 
     private ExamListAdapter mAdapter;
     private BaseContentObserver mDataObserver;
@@ -102,11 +104,16 @@ public class ExamFragment extends BaseFragment implements ContentObserverListene
         UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
         uriMatcher.addURI(KusssContentContract.AUTHORITY,
                 KusssContentContract.Exam.PATH_CONTENT_CHANGED, 0);
+        uriMatcher.addURI(KusssContentContract.AUTHORITY,
+                KusssContentContract.Course.PATH_CONTENT_CHANGED, 1);
 
         mDataObserver = new BaseContentObserver(uriMatcher, this);
         requireContext().getContentResolver().registerContentObserver(
                 KusssContentContract.Exam.CONTENT_CHANGED_URI, false,
                 mDataObserver);
+        requireContext().getContentResolver().registerContentObserver(
+                KusssContentContract.Course.CONTENT_CHANGED_URI, false,
+                mDataObserver);
     }
 
     @Override
@@ -138,33 +145,18 @@ public class ExamFragment extends BaseFragment implements ContentObserverListene
 
     @NonNull
     @Override
-    public Loader<Cursor> onCreateLoader(int id, @Nullable Bundle args) {
+    public Loader<List<ExamListExam>> onCreateLoader(int id, @Nullable Bundle args) {
         showProgressIndeterminate();
 
-        return new CursorLoader(requireContext(), KusssContentContract.Exam.CONTENT_URI,
-                KusssContentContract.Exam.DB.getProjection(), null, null,
-                KusssContentContract.Exam.COL_DTSTART + " ASC");
-
+        return new ExamLoader(requireContext());
     }
 
     @Override
-    public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor data) {
+    public void onLoadFinished(@NonNull Loader<List<ExamListExam>> loader, List<ExamListExam> data) {
         mAdapter.clear();
 
-        if (data != null && AppUtils.getAccount(getContext()) != null) {
-            CourseMap map = new CourseMap(getContext());
-            List<ExamListExam> mExams = new ArrayList<>();
-
-            data.moveToFirst();
-            data.moveToPrevious();
-            while (data.moveToNext()) {
-                try {
-                    mExams.add(new ExamListExam(data, map));
-                } catch (ParseException e) {
-                    AnalyticsHelper.sendException(getContext(), e, false);
-                }
-            }
-            mAdapter.addAll(mExams);
+        if (data != null) {
+            mAdapter.addAll(data);
         }
         mAdapter.notifyDataSetChanged();
 
@@ -172,7 +164,7 @@ public class ExamFragment extends BaseFragment implements ContentObserverListene
     }
 
     @Override
-    public void onLoaderReset(@NonNull Loader<Cursor> loader) {
+    public void onLoaderReset(@NonNull Loader<List<ExamListExam>> loader) {
         mAdapter.clear();
         mAdapter.notifyDataSetChanged();
 
@@ -183,4 +175,36 @@ public class ExamFragment extends BaseFragment implements ContentObserverListene
     public void onContentChanged(boolean selfChange) {
         LoaderManager.getInstance(this).restartLoader(0, null, this);
     }
+
+    private static class ExamLoader extends BaseAsyncTaskLoader<List<ExamListExam>> {
+
+        ExamLoader(Context context) {
+            super(context);
+        }
+
+        @Override
+        public List<ExamListExam> loadInBackground() {
+            List<ExamListExam> exams = new ArrayList<>();
+
+            if (AppUtils.getAccount(getContext()) != null) {
+                CourseMap map = CourseMap.getInstance(getContext());
+
+                ContentResolver cr = getContext().getContentResolver();
+                try (Cursor c = cr.query(KusssContentContract.Exam.CONTENT_URI,
+                        KusssContentContract.Exam.DB.getProjection(), null, null,
+                        KusssContentContract.Exam.COL_DTSTART + " ASC")) {
+                    if (c != null) {
+                        while (c.moveToNext()) {
+                            try {
+                                exams.add(new ExamListExam(c, map));
+                            } catch (ParseException e) {
+                                AnalyticsHelper.sendException(getContext(), e, false);
+                            }
+                        }
+                    }
+                }
+            }
+            return exams;
+        }
+    }
 }
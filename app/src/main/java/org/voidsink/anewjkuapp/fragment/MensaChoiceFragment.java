@@ -25,15 +25,14 @@
 
 package org.voidsink.anewjkuapp.fragment;
 
-import org.voidsink.anewjkuapp.mensa.ChoiceMenuLoader;
-import org.voidsink.anewjkuapp.mensa.MenuLoader;
+import org.voidsink.anewjkuapp.mensa.Mensen;
 import org.voidsink.anewjkuapp.utils.Consts;
 
 public class MensaChoiceFragment extends MensaFragmentDetail {
 
     @Override
-    protected MenuLoader createLoader() {
-        return new ChoiceMenuLoader();
+    protected String getMensaKey() {
+        return Mensen.MENSA_CHOICE;
     }
 
     @Override
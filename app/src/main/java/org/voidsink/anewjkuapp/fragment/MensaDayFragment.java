@@ -29,6 +29,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.text.format.DateUtils;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -50,21 +51,18 @@ import org.voidsink.anewjkuapp.MensaMenuItem;
 import org.voidsink.anewjkuapp.R;
 import org.voidsink.anewjkuapp.base.BaseAsyncTaskLoader;
 import org.voidsink.anewjkuapp.base.BaseFragment;
-import org.voidsink.anewjkuapp.mensa.ChoiceMenuLoader;
-import org.voidsink.anewjkuapp.mensa.ClassicMenuLoader;
 import org.voidsink.anewjkuapp.mensa.IDay;
 import org.voidsink.anewjkuapp.mensa.IMensa;
 import org.voidsink.anewjkuapp.mensa.IMenu;
-import org.voidsink.anewjkuapp.mensa.KHGMenuLoader;
-import org.voidsink.anewjkuapp.mensa.MenuLoader;
-import org.voidsink.anewjkuapp.mensa.RaabMenuLoader;
-import org.voidsink.anewjkuapp.mensa.TagestellerMenuLoader;
+import org.voidsink.anewjkuapp.mensa.MensaRepository;
+import org.voidsink.anewjkuapp.mensa.Mensen;
 import org.voidsink.anewjkuapp.utils.Consts;
 import org.voidsink.sectionedrecycleradapter.SectionedRecyclerViewAdapter;
 
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 public class MensaDayFragment extends BaseFragment implements LoaderManager.LoaderCallbacks<List<MensaItem>> {
 
@@ -92,6 +90,7 @@ public class MensaDayFragment extends BaseFragment implements LoaderManager.Load
 
     private void updateData() {
         if (this.isVisible() && !LoaderManager.getInstance(this).hasRunningLoaders()) {
+            MensaRepository.invalidate();
             LoaderManager.getInstance(this).restartLoader(0, null, this);
         }
     }
@@ -112,16 +111,16 @@ public class MensaDayFragment extends BaseFragment implements LoaderManager.Load
         this.mDate = mDate;
     }
 
-    protected List<MenuLoader> createLoaders() {
-        List<MenuLoader> loaders = new ArrayList<>();
+    protected List<String> getMensaKeys() {
+        List<String> keys = new ArrayList<>();
 
-        loaders.add(new ClassicMenuLoader());
-        loaders.add(new TagestellerMenuLoader());
-        loaders.add(new ChoiceMenuLoader());
-        loaders.add(new KHGMenuLoader());
-        loaders.add(new RaabMenuLoader());
+        keys.add(Mensen.MENSA_CLASSIC);
+        keys.add(Mensen.MENSA_TAGESTELLER);
+        keys.add(Mensen.MENSA_CHOICE);
+        keys.add(Mensen.MENSA_KHG);
+        keys.add(Mensen.MENSA_RAAB);
 
-        return loaders;
+        return keys;
     }
 
     @NonNull
@@ -129,7 +128,7 @@ public class MensaDayFragment extends BaseFragment implements LoaderManager.Load
     public Loader<List<MensaItem>> onCreateLoader(int id, @Nullable Bundle args) {
         showProgressIndeterminate();
 
-        return new MenuDayLoader(getContext(), mDate, createLoaders());
+        return new MenuDayLoader(getContext(), mDate, getMensaKeys());
     }
 
     @Override
@@ -152,13 +151,36 @@ public class MensaDayFragment extends BaseFragment implements LoaderManager.Load
     }
 
     private static class MenuDayLoader extends BaseAsyncTaskLoader<List<MensaItem>> {
+        // show fast mensen first, slow ones trigger a reload when they are done
+        private static final long LOAD_TIMEOUT = 3 * DateUtils.SECOND_IN_MILLIS;
+
         private final Date mDate;
-        private final List<MenuLoader> mMenuLoaders;
+        private final List<String> mMensaKeys;
+        private final MensaRepository.OnMensaLoadedListener mChangedListener;
 
-        MenuDayLoader(Context c, Date date, List<MenuLoader> mMenuLoaders) {
+        MenuDayLoader(Context c, Date date, List<String> mensaKeys) {
             super(c);
             this.mDate = date;
-            this.mMenuLoaders = mMenuLoaders;
+            this.mMensaKeys = mensaKeys;
+            this.mChangedListener = key -> {
+                if (mMensaKeys.contains(key)) {
+                    onContentChanged();
+                }
+            };
+        }
+
+        @Override
+        protected void onStartLoading() {
+            MensaRepository.addOnMensaChangedListener(mChangedListener);
+
+            super.onStartLoading();
+        }
+
+        @Override
+        protected void onReset() {
+            super.onReset();
+
+            MensaRepository.removeOnMensaChangedListener(mChangedListener);
         }
 
         @Override
@@ -166,8 +188,11 @@ public class MensaDayFragment extends BaseFragment implements LoaderManager.Load
             List<MensaItem> menus = new ArrayList<>();
             int noMenuCount = 0;
 
-            for (MenuLoader menuLoader : mMenuLoaders) {
-                IMensa mensa = menuLoader.getMensa(getContext());
+            // weeks are shared by all day tabs, only the first tab loads them
+            Map<String, IMensa> mensen = MensaRepository.getMensen(getContext(), mMensaKeys,
+                    LOAD_TIMEOUT, key -> onContentChanged());
+
+            for (IMensa mensa : mensen.values()) {
                 if (mensa != null) {
                     IDay day = mensa.getDay(mDate);
                     if (day != null && !day.isEmpty()) {
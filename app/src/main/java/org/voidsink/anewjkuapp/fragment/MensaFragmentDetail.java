@@ -54,7 +54,7 @@ import org.voidsink.anewjkuapp.base.BaseFragment;
 import org.voidsink.anewjkuapp.mensa.IDay;
 import org.voidsink.anewjkuapp.mensa.IMensa;
 import org.voidsink.anewjkuapp.mensa.IMenu;
-import org.voidsink.anewjkuapp.mensa.MenuLoader;
+import org.voidsink.anewjkuapp.mensa.MensaRepository;
 import org.voidsink.sectionedrecycleradapter.SectionedRecyclerViewAdapter;
 
 import java.util.ArrayList;
@@ -90,18 +90,22 @@ public abstract class MensaFragmentDetail extends BaseFragment implements Loader
 
     private void updateData() {
         if (this.isVisible() && !LoaderManager.getInstance(this).hasRunningLoaders()) {
+            MensaRepository.invalidate();
             LoaderManager.getInstance(this).restartLoader(0, null, this);
         }
     }
 
-    protected abstract MenuLoader createLoader();
+    /**
+     * @return key of mensa to show, one of {@link org.voidsink.anewjkuapp.mensa.Mensen}
+     */
+    protected abstract String getMensaKey();
 
     @NonNull
     @Override
     public Loader<ArrayList<MensaItem>> onCreateLoader(int i, Bundle bundle) {
         showProgressIndeterminate();
 
-        return new MenuDetailLoader(getContext(), createLoader());
+        return new MenuDetailLoader(getContext(), getMensaKey());
     }
 
     @Override
@@ -125,19 +129,39 @@ public abstract class MensaFragmentDetail extends BaseFragment implements Loader
 
     private static class MenuDetailLoader extends BaseAsyncTaskLoader<ArrayList<MensaItem>> {
 
-        private final MenuLoader mMenuLoader;
+        private final String mMensaKey;
+        private final MensaRepository.OnMensaLoadedListener mChangedListener;
 
-        public MenuDetailLoader(Context context, MenuLoader menuLoader) {
+        public MenuDetailLoader(Context context, String mensaKey) {
             super(context);
 
-            this.mMenuLoader = menuLoader;
+            this.mMensaKey = mensaKey;
+            this.mChangedListener = key -> {
+                if (mMensaKey.equals(key)) {
+                    onContentChanged();
+                }
+            };
+        }
+
+        @Override
+        protected void onStartLoading() {
+            MensaRepository.addOnMensaChangedListener(mChangedListener);
+
+            super.onStartLoading();
+        }
+
+        @Override
+        protected void onReset() {
+            super.onReset();
+
+            MensaRepository.removeOnMensaChangedListener(mChangedListener);
         }
 
         @Override
         public ArrayList<MensaItem> loadInBackground() {
             ArrayList<MensaItem> mMenus = new ArrayList<>();
 
-            final IMensa mensa = mMenuLoader.getMensa(MenuDetailLoader.this.getContext());
+            final IMensa mensa = MensaRepository.getMensa(MenuDetailLoader.this.getContext(), mMensaKey);
 
             Calendar cal = Calendar.getInstance();
             cal.set(Calendar.HOUR_OF_DAY, 0);
@@ -25,15 +25,14 @@
 
 package org.voidsink.anewjkuapp.fragment;
 
-import org.voidsink.anewjkuapp.mensa.KHGMenuLoader;
-import org.voidsink.anewjkuapp.mensa.MenuLoader;
+import org.voidsink.anewjkuapp.mensa.Mensen;
 import org.voidsink.anewjkuapp.utils.Consts;
 
 public class MensaKHGFragment extends MensaFragmentDetail {
 
     @Override
-    protected MenuLoader createLoader() {
-        return new KHGMenuLoader();
+    protected String getMensaKey() {
+        return Mensen.MENSA_KHG;
     }
 
     @Override
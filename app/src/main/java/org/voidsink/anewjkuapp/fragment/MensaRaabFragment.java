@@ -25,15 +25,14 @@
 
 package org.voidsink.anewjkuapp.fragment;
 
-import org.voidsink.anewjkuapp.mensa.MenuLoader;
-import org.voidsink.anewjkuapp.mensa.RaabMenuLoader;
+import org.voidsink.anewjkuapp.mensa.Mensen;
 import org.voidsink.anewjkuapp.utils.Consts;
 
 public class MensaRaabFragment extends MensaFragmentDetail {
 
     @Override
-    protected MenuLoader createLoader() {
-        return new RaabMenuLoader();
+    protected String getMensaKey() {
+        return Mensen.MENSA_RAAB;
     }
 
     @Override
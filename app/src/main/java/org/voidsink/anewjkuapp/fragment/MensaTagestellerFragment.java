@@ -25,15 +25,14 @@
 
 package org.voidsink.anewjkuapp.fragment;
 
-import org.voidsink.anewjkuapp.mensa.MenuLoader;
-import org.voidsink.anewjkuapp.mensa.TagestellerMenuLoader;
+import org.voidsink.anewjkuapp.mensa.Mensen;
 import org.voidsink.anewjkuapp.utils.Consts;
 
 public class MensaTagestellerFragment extends MensaFragmentDetail {
 
     @Override
-    protected MenuLoader createLoader() {
-        return new TagestellerMenuLoader();
+    protected String getMensaKey() {
+        return Mensen.MENSA_TAGESTELLER;
     }
 
     @Override
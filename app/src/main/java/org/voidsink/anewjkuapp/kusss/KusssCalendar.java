@@ -25,26 +25,35 @@
 
 package org.voidsink.anewjkuapp.kusss;
 
-import net.fortuna.ical4j.model.Calendar;
+import org.voidsink.anewjkuapp.calendar.ICalEvent;
+
+import java.util.List;
 
 public class KusssCalendar {
 
     private final Term mTerm;
     private final boolean mMandatory;
     private final String mUidPrefix;
-    private final Calendar mCalendar;
+    private final List<ICalEvent> mEvents;
     private final String mName;
+    private final String mEndpoint;
+    private final boolean mUnchanged;
 
-    public KusssCalendar(String name, Term term, String uidPrefix, boolean mandatory, Calendar calendar) {
+    public KusssCalendar(String name, Term term, String uidPrefix, boolean mandatory, List<ICalEvent> events, String endpoint, boolean unchanged) {
         this.mTerm = term;
         this.mMandatory = mandatory;
         this.mUidPrefix = uidPrefix;
-        this.mCalendar = calendar;
+        this.mEvents = events;
         this.mName = name + " " + term.toString();
+        this.mEndpoint = endpoint;
+        this.mUnchanged = unchanged;
     }
 
-    public Calendar getCalendar() {
-        return mCalendar;
+    /**
+     * @return events of the calendar or null if it wasn't loaded
+     */
+    public List<ICalEvent> getEvents() {
+        return mEvents;
     }
 
     public boolean isMandatory() {
@@ -62,4 +71,15 @@ public class KusssCalendar {
     public String getName() {
         return mName;
     }
+
+    public String getEndpoint() {
+        return mEndpoint;
+    }
+
+    /**
+     * @return true if the calendar was not loaded because it is unchanged since the last import
+     */
+    public boolean isUnchanged() {
+        return mUnchanged;
+    }
 }
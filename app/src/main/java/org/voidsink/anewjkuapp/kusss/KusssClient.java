@@ -0,0 +1,199 @@
+/*
+ *       ____.____  __.____ ___     _____
+ *      |    |    |/ _|    |   \   /  _  \ ______ ______
+ *      |    |      < |    |   /  /  /_\  \\____ \\____ \
+ *  /\__|    |    |  \|    |  /  /    |    \  |_> >  |_> >
+ *  \________|____|__ \______/   \____|__  /   __/|   __/
+ *                   \/                  \/|__|   |__|
+ *
+ *  Copyright (c) 2014-2020 Paul "Marunjar" Pretsch
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.voidsink.anewjkuapp.kusss;
+
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.CookieHandler;
+import java.net.CookieManager;
+import java.net.CookiePolicy;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.jsoup.Connection.Method.GET;
+import static org.jsoup.Connection.Method.POST;
+
+/**
+ * HTTP layer for all requests to KUSSS.
+ * <p>
+ * All requests go through the platform HttpURLConnection, which keeps idle connections to
+ * www.kusss.jku.at in its pool and resumes TLS sessions from the default SSL session cache, as long
+ * as requests are sent with keep-alive and bodies are read completely. The cookie header is cached
+ * and only rebuilt if a response sets cookies or the session is cleared. Jsoup requests gzip
+ * encoding and decompresses responses transparently.
+ */
+public class KusssClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(KusssClient.class);
+
+    private static final String URL_KUSSS = "https://www.kusss.jku.at/";
+    private static final String COOKIE_SESSION_ID = "JSESSIONID";
+
+    private static final int TIMEOUT_DEFAULT = 30 * 1000; // 30s
+
+    private final CookieManager mCookies;
+    private String mUserAgent;
+    private Map<String, String> mCookieMap = null;
+
+    KusssClient(String userAgent) {
+        this.mCookies = new CookieManager(null, CookiePolicy.ACCEPT_ALL);
+        CookieHandler.setDefault(mCookies);
+
+        setUserAgent(userAgent);
+    }
+
+    void setUserAgent(String userAgent) {
+        if (!TextUtils.isEmpty(userAgent)) {
+            this.mUserAgent = userAgent;
+        }
+    }
+
+    /**
+     * creates a new connection with user agent, cached session cookies and keep-alive
+     *
+     * @param url url to connect
+     * @return prepared Jsoup connection
+     */
+    public Connection connect(String url) {
+        return Jsoup.connect(url)
+                .userAgent(mUserAgent)
+                .cookies(getCookieMap())
+                .header("Connection", "keep-alive")
+                .timeout(TIMEOUT_DEFAULT);
+    }
+
+    /**
+     * executes the request and reads the whole body so the connection can be reused
+     *
+     * @param connection a connection created by {@link #connect(String)}
+     * @return response with buffered body
+     * @throws IOException of connection.execute()
+     */
+    public Connection.Response execute(Connection connection) throws IOException {
+        return execute(connection, true);
+    }
+
+    /**
+     * executes the request without reading the body, use for large responses that can be parsed
+     * from {@link Connection.Response#bodyStream()}. The stream has to be read completely and
+     * closed by the caller so the connection can be reused.
+     *
+     * @param connection a connection created by {@link #connect(String)}
+     * @return response with unread body
+     * @throws IOException of connection.execute()
+     */
+    public Connection.Response executeStreamed(Connection connection) throws IOException {
+        return execute(connection, false);
+    }
+
+    private Connection.Response execute(Connection connection, boolean buffered) throws IOException {
+        final long start = SystemClock.elapsedRealtime();
+        try {
+            Connection.Response response = connection.execute();
+            if (buffered) {
+                response.bufferUp();
+            }
+            if (!response.cookies().isEmpty()) {
+                invalidateCookieMap();
+            }
+            return response;
+        } finally {
+            final long time = SystemClock.elapsedRealtime() - start;
+
+            logger.debug("{} {} took {}ms", connection.request().method(), connection.request().url(), time);
+        }
+    }
+
+    /**
+     * workaround for jsoup parsing error, see
+     * https://github.com/marunjar/anewjkuapp/issues/139
+     * https://github.com/jhy/jsoup/issues/1218
+     *
+     * @param response response of a Jsoup connetion.execute()
+     * @return Document the parsed html
+     */
+    public Document parse(Connection.Response response) {
+        String body = response.body();
+        return Jsoup.parse(body);
+    }
+
+    public Document get(Connection connection) throws IOException {
+        return parse(execute(connection.method(GET)));
+    }
+
+    public Document post(Connection connection) throws IOException {
+        return parse(execute(connection.method(POST)));
+    }
+
+    private synchronized Map<String, String> getCookieMap() {
+        if (mCookieMap == null) {
+            Map<String, String> cookies = new HashMap<>();
+            for (HttpCookie cookie : mCookies.getCookieStore().getCookies()) {
+                cookies.put(cookie.getName(), cookie.getValue());
+            }
+            mCookieMap = Collections.unmodifiableMap(cookies);
+        }
+        return mCookieMap;
+    }
+
+    private synchronized void invalidateCookieMap() {
+        mCookieMap = null;
+    }
+
+    public synchronized void clearCookies() {
+        mCookies.getCookieStore().removeAll();
+        invalidateCookieMap();
+    }
+
+    public String getSessionId() {
+        try {
+            List<HttpCookie> cookies = mCookies.getCookieStore().get(new URI(URL_KUSSS));
+
+            for (HttpCookie cookie : cookies) {
+                if (cookie.getName().equals(COOKIE_SESSION_ID)) {
+                    return cookie.getValue();
+                }
+            }
+            return null;
+        } catch (URISyntaxException e) {
+            logger.error("getSessionId", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ *       ____.____  __.____ ___     _____
+ *      |    |    |/ _|    |   \   /  _  \ ______ ______
+ *      |    |      < |    |   /  /  /_\  \\____ \\____ \
+ *  /\__|    |    |  \|    |  /  /    |    \  |_> >  |_> >
+ *  \________|____|__ \______/   \____|__  /   __/|   __/
+ *                   \/                  \/|__|   |__|
+ *
+ *  Copyright (c) 2014-2020 Paul "Marunjar" Pretsch
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.voidsink.anewjkuapp.kusss;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.text.format.DateUtils;
+
+import org.jsoup.Connection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.voidsink.anewjkuapp.BuildConfig;
+
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores a fingerprint of each KUSSS page after it has been merged successfully. The fingerprint is
+ * the ETag or Last-Modified header if KUSSS sends one, a hash of the body otherwise. Unchanged pages
+ * don't need to be parsed or merged again.
+ */
+public class KusssFingerprints {
+
+    private static final Logger logger = LoggerFactory.getLogger(KusssFingerprints.class);
+
+    private static final String PREFS_NAME = "kusss_fingerprints";
+
+    private static final String SUFFIX_FINGERPRINT = "_fingerprint";
+    private static final String SUFFIX_ETAG = "_etag";
+    private static final String SUFFIX_LAST_MODIFIED = "_last_modified";
+    private static final String SUFFIX_TIME = "_time";
+    private static final String SUFFIX_VERSION = "_version";
+
+    // merge at least once a week even if nothing changed
+    private static final long MAX_AGE = 7 * DateUtils.DAY_IN_MILLIS;
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+    private final SharedPreferences mPreferences;
+    private final Map<String, Fingerprint> mPending = new HashMap<>();
+    private final Set<String> mUnchanged = new HashSet<>();
+
+    KusssFingerprints(Context context) {
+        this.mPreferences = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static void clear(Context context) {
+        context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().clear().apply();
+    }
+
+    private synchronized boolean isFresh(String endpoint) {
+        return mPreferences.getInt(endpoint + SUFFIX_VERSION, 0) == BuildConfig.VERSION_CODE &&
+                System.currentTimeMillis() - mPreferences.getLong(endpoint + SUFFIX_TIME, 0) < MAX_AGE;
+    }
+
+    /**
+     * adds If-None-Match and If-Modified-Since headers if validators of the last merge are known
+     *
+     * @param endpoint   name of endpoint
+     * @param connection connection to endpoint
+     */
+    synchronized void addConditionalHeaders(String endpoint, Connection connection) {
+        if (!isFresh(endpoint)) {
+            return;
+        }
+        String eTag = mPreferences.getString(endpoint + SUFFIX_ETAG, null);
+        if (!TextUtils.isEmpty(eTag)) {
+            connection.header("If-None-Match", eTag);
+        }
+        String lastModified = mPreferences.getString(endpoint + SUFFIX_LAST_MODIFIED, null);
+        if (!TextUtils.isEmpty(lastModified)) {
+            connection.header("If-Modified-Since", lastModified);
+        }
+    }
+
+    /**
+     * calculates the fingerprint of the responses and keeps it until {@link #commit(String)}
+     *
+     * @param endpoint  name of endpoint
+     * @param responses all responses of the endpoint
+     * @return true if content is unchanged since the last commit
+     */
+    synchronized boolean update(String endpoint, Connection.Response... responses) {
+        boolean fresh = isFresh(endpoint);
+        String committed = mPreferences.getString(endpoint + SUFFIX_FINGERPRINT, null);
+
+        boolean unchanged;
+        if (responses.length == 1 && responses[0].statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            // server confirmed our validators
+            unchanged = fresh && committed != null;
+            mPending.put(endpoint, new Fingerprint(committed,
+                    mPreferences.getString(endpoint + SUFFIX_ETAG, null),
+                    mPreferences.getString(endpoint + SUFFIX_LAST_MODIFIED, null)));
+        } else {
+            Fingerprint fingerprint = Fingerprint.from(responses);
+            unchanged = fresh && fingerprint.mValue != null && fingerprint.mValue.equals(committed);
+            mPending.put(endpoint, fingerprint);
+        }
+
+        return setUnchanged(endpoint, unchanged);
+    }
+
+    /**
+     * like {@link #update(String, Connection.Response...)} for a body that was streamed through
+     * a {@link java.security.DigestInputStream} instead of being buffered
+     *
+     * @param endpoint name of endpoint
+     * @param digest   digest of {@link #newDigest()} after the whole body was read
+     * @return true if content is unchanged since the last commit
+     */
+    synchronized boolean update(String endpoint, MessageDigest digest) {
+        String committed = mPreferences.getString(endpoint + SUFFIX_FINGERPRINT, null);
+
+        digest.update((byte) 0);
+        Fingerprint fingerprint = new Fingerprint(Fingerprint.toString(digest), null, null);
+        mPending.put(endpoint, fingerprint);
+
+        return setUnchanged(endpoint, isFresh(endpoint) && fingerprint.mValue.equals(committed));
+    }
+
+    /**
+     * forgets the result of the last update, call before loading the endpoint again so a failed load
+     * isn't taken for an unchanged one
+     *
+     * @param endpoint name of endpoint
+     */
+    synchronized void reset(String endpoint) {
+        mUnchanged.remove(endpoint);
+        mPending.remove(endpoint);
+    }
+
+    private boolean setUnchanged(String endpoint, boolean unchanged) {
+        if (unchanged) {
+            mUnchanged.add(endpoint);
+        } else {
+            mUnchanged.remove(endpoint);
+        }
+        logger.debug("{} unchanged={}", endpoint, unchanged);
+        return unchanged;
+    }
+
+    /**
+     * @param response response with unread body
+     * @return true if the fingerprint can be calculated without reading the body
+     */
+    static boolean hasValidators(Connection.Response response) {
+        return response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED ||
+                !TextUtils.isEmpty(response.header(HEADER_ETAG)) ||
+                !TextUtils.isEmpty(response.header(HEADER_LAST_MODIFIED));
+    }
+
+    /**
+     * @return digest for body fingerprints or null if not available
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            logger.warn("hash failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param endpoint name of endpoint
+     * @return true if the last {@link #update(String, Connection.Response...)} found no changes
+     */
+    public synchronized boolean isUnchanged(String endpoint) {
+        return mUnchanged.contains(endpoint);
+    }
+
+    /**
+     * stores the pending fingerprint, call after the content was merged successfully
+     *
+     * @param endpoint name of endpoint
+     */
+    public synchronized void commit(String endpoint) {
+        Fingerprint fingerprint = mPending.remove(endpoint);
+        if (fingerprint == null || fingerprint.mValue == null) {
+            return;
+        }
+        mPreferences.edit()
+                .putString(endpoint + SUFFIX_FINGERPRINT, fingerprint.mValue)
+                .putString(endpoint + SUFFIX_ETAG, fingerprint.mETag)
+                .putString(endpoint + SUFFIX_LAST_MODIFIED, fingerprint.mLastModified)
+                .putLong(endpoint + SUFFIX_TIME, System.currentTimeMillis())
+                .putInt(endpoint + SUFFIX_VERSION, BuildConfig.VERSION_CODE)
+                .apply();
+    }
+
+    private static class Fingerprint {
+        private final String mValue;
+        private final String mETag;
+        private final String mLastModified;
+
+        private Fingerprint(String value, String eTag, String lastModified) {
+            this.mValue = value;
+            this.mETag = eTag;
+            this.mLastModified = lastModified;
+        }
+
+        private static Fingerprint from(Connection.Response... responses) {
+            if (responses.length == 1) {
+                String eTag = responses[0].header(HEADER_ETAG);
+                String lastModified = responses[0].header(HEADER_LAST_MODIFIED);
+                if (!TextUtils.isEmpty(eTag)) {
+                    return new Fingerprint("etag:" + eTag, eTag, lastModified);
+                }
+                if (!TextUtils.isEmpty(lastModified)) {
+                    return new Fingerprint("modified:" + lastModified, null, lastModified);
+                }
+            }
+            return new Fingerprint(hash(responses), null, null);
+        }
+
+        private static String hash(Connection.Response... responses) {
+            MessageDigest digest = newDigest();
+            if (digest == null) {
+                return null;
+            }
+            for (Connection.Response response : responses) {
+                digest.update(response.bodyAsBytes());
+                digest.update((byte) 0);
+            }
+            return toString(digest);
+        }
+
+        private static String toString(MessageDigest digest) {
+            StringBuilder sb = new StringBuilder("sha1:");
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -25,16 +25,16 @@
 
 package org.voidsink.anewjkuapp.kusss;
 
+import android.accounts.Account;
 import android.content.Context;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
 
 import net.fortuna.ical4j.data.CalendarBuilder;
 import net.fortuna.ical4j.data.ParserException;
-import net.fortuna.ical4j.model.Calendar;
 
 import org.jsoup.Connection;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -42,29 +42,33 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
 import org.voidsink.anewjkuapp.calendar.CalendarUtils;
+import org.voidsink.anewjkuapp.calendar.ICalEvent;
+import org.voidsink.anewjkuapp.calendar.ICalEventParser;
 import org.voidsink.anewjkuapp.utils.AppUtils;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.CookieHandler;
-import java.net.CookieManager;
-import java.net.CookiePolicy;
-import java.net.HttpCookie;
 import java.net.SocketTimeoutException;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.jsoup.Connection.Method.GET;
 import static org.jsoup.Connection.Method.POST;
@@ -99,21 +103,37 @@ public class KusssHandler {
     private static final String URL_MY_STUDIES = "https://www.kusss.jku.at/kusss/studentsettings.action?set.studentsettings.tabbedPanel.selectedTab=studies";
     private static final String SELECT_MY_STUDIES = "body.intra > table > tbody > tr > td > table > tbody > tr > td.contentcell > div.contentcell > div.tabcontainer > div.tabcontent > form > table > tbody > tr[class]:has(td)";
 
+    public static final String ENDPOINT_ASSESSMENTS = "assessments";
+    public static final String ENDPOINT_EXAMS = "exams";
+    public static final String ENDPOINT_CURRICULA = "curricula";
+    private static final String ENDPOINT_ICAL_PREFIX = "ical_";
+
     private static final int TIMEOUT_LOGIN = 15 * 1000; // 15s
     private static final int TIMEOUT_SEARCH_EXAM_BY_LVA = 15 * 1000; //15s
     private static final int TIMEOUT_CALENDAR_READ = 15 * 1000; // 15s
 
+    // keep session after last worker finished, workers of one sync cycle are started one after another
+    private static final long SESSION_LOGOUT_DELAY = 2 * DateUtils.MINUTE_IN_MILLIS;
+    // don't check session again if it was checked recently
+    private static final long SESSION_VALIDATION_INTERVAL = DateUtils.MINUTE_IN_MILLIS;
+
     private volatile static KusssHandler handler = null;
-    private final CookieManager mCookies;
-    private String mUserAgent;
+    private final KusssClient mClient;
+    private final ScheduledExecutorService mSessionExecutor = Executors.newSingleThreadScheduledExecutor();
+    private int mSessionLeases = 0;
+    private long mSessionValidated = 0;
+    private ScheduledFuture<?> mPendingLogout = null;
+
+    // results of walkTerms are used by the import workers started right after the walk
+    private static final long TERM_WALK_VALIDITY = 10 * DateUtils.MINUTE_IN_MILLIS;
+    private TermWalk mTermWalk = null;
+
+    private KusssFingerprints mFingerprints = null;
 
     private static final Logger logger = LoggerFactory.getLogger(KusssHandler.class);
 
     @SuppressWarnings("EmptyCatch")
     private KusssHandler() {
-        this.mCookies = new CookieManager(null, CookiePolicy.ACCEPT_ALL);
-        CookieHandler.setDefault(mCookies);
-
         String userAgent = null;
         try {
             userAgent = System.getProperty("http.agent");
@@ -122,78 +142,46 @@ public class KusssHandler {
         if (TextUtils.isEmpty(userAgent)) {
             userAgent = "Mozilla/5.0";
         }
-        setUserAgent(userAgent);
-    }
-
-    private static boolean isConnected(Context context) {
-        return AppUtils.isConnected(context, false);
-    }
-
-    public static synchronized KusssHandler getInstance() {
-        if (handler == null) {
-            synchronized (KusssHandler.class) {
-                if (handler == null) handler = new KusssHandler();
-            }
-        }
-        return handler;
+        this.mClient = new KusssClient(userAgent);
     }
 
-    private String getSessionIDFromCookie() {
-        try {
-            List<HttpCookie> cookies = mCookies.getCookieStore().get(
-                    new URI("https://www.kusss.jku.at/"));
-
-            for (HttpCookie cookie : cookies) {
-                if (cookie.getName().equals("JSESSIONID")) {
-                    return cookie.getValue();
-                }
-            }
-            return null;
-        } catch (URISyntaxException e) {
-            logger.error("getSessionIDFromCookie", e);
-            return null;
+    private synchronized KusssFingerprints getFingerprints(Context c) {
+        if (mFingerprints == null) {
+            mFingerprints = new KusssFingerprints(c);
         }
+        return mFingerprints;
     }
 
     /**
-     * workaround for jsoup parsing error, see
-     * https://github.com/marunjar/anewjkuapp/issues/139
-     * https://github.com/jhy/jsoup/issues/1218
-     *
-     * @param response response of a Jsoup connetion.execute()
-     * @return Document the parsed html
+     * @param c        context
+     * @param endpoint one of ENDPOINT_* or {@link KusssCalendar#getEndpoint()}
+     * @return true if the content of endpoint was unchanged when loaded the last time
      */
-    private Document parseResponse(Connection.Response response) {
-        String body = response.body();
-        return Jsoup.parse(body);
+    public boolean isUnchanged(Context c, String endpoint) {
+        return getFingerprints(c).isUnchanged(endpoint);
     }
 
     /**
-     * workaround for jsoup parsing error, see
-     * https://github.com/marunjar/anewjkuapp/issues/139
-     * https://github.com/jhy/jsoup/issues/1218
+     * remembers the content of endpoint as merged, call after successful import
      *
-     * @param connection a Jsoup connection
-     * @return Document the parsed html
-     * @throws IOException of connection.execute()
+     * @param c        context
+     * @param endpoint one of ENDPOINT_* or {@link KusssCalendar#getEndpoint()}
      */
-    private Document getDocument(Connection connection) throws IOException {
-        Connection.Response response = connection.method(GET).execute();
-        return parseResponse(response);
+    public void commitFingerprint(Context c, String endpoint) {
+        getFingerprints(c).commit(endpoint);
     }
 
-    /**
-     * workaround for jsoup parsing error, see
-     * https://github.com/marunjar/anewjkuapp/issues/139
-     * https://github.com/jhy/jsoup/issues/1218
-     *
-     * @param connection a Jsoup connection
-     * @return Document the parsed html
-     * @throws IOException of connection.execute()
-     */
-    private Document postAndGetDocument(Connection connection) throws IOException {
-        Connection.Response response = connection.method(POST).execute();
-        return parseResponse(response);
+    private static boolean isConnected(Context context) {
+        return AppUtils.isConnected(context, false);
+    }
+
+    public static synchronized KusssHandler getInstance() {
+        if (handler == null) {
+            synchronized (KusssHandler.class) {
+                if (handler == null) handler = new KusssHandler();
+            }
+        }
+        return handler;
     }
 
     public synchronized String login(Context c, String user, String password) {
@@ -210,19 +198,19 @@ public class KusssHandler {
                 user = "k" + user;
             }
 
-            mCookies.getCookieStore().removeAll();
+            mClient.clearCookies();
 
-            getDocument(Jsoup.connect(URL_KUSSS_INDEX).userAgent(this.mUserAgent).timeout(TIMEOUT_LOGIN).followRedirects(true));
+            mClient.get(mClient.connect(URL_KUSSS_INDEX).timeout(TIMEOUT_LOGIN).followRedirects(true));
 
-            Connection.Response r = Jsoup.connect(URL_LOGIN).userAgent(this.mUserAgent).cookies(getCookieMap()).data("j_username", user).data("j_password", password).timeout(TIMEOUT_LOGIN).followRedirects(true).method(POST).execute();
+            Connection.Response r = mClient.execute(mClient.connect(URL_LOGIN).data("j_username", user).data("j_password", password).timeout(TIMEOUT_LOGIN).followRedirects(true).method(POST));
 
             if (r.url() != null) {
-                r = Jsoup.connect(r.url().toString()).userAgent(this.mUserAgent).cookies(getCookieMap()).method(GET).execute();
+                r = mClient.execute(mClient.connect(r.url().toString()).method(GET));
             }
 
-            Document doc = parseResponse(r);
+            Document doc = mClient.parse(r);
 
-            String sessionId = getSessionIDFromCookie();
+            String sessionId = mClient.getSessionId();
             if (isLoggedIn(c, doc)) {
                 return sessionId;
             }
@@ -243,24 +231,86 @@ public class KusssHandler {
         }
     }
 
-    private Map<String, String> getCookieMap() {
-        Map<String, String> cookies = new HashMap<>();
-        for (HttpCookie cookie : mCookies.getCookieStore().getCookies()) {
-            cookies.put(cookie.getName(), cookie.getValue());
-        }
-        return cookies;
-    }
-
     public synchronized void logout(Context c) {
         try {
             if (isConnected(c)) {
-                Jsoup.connect(URL_LOGOUT).userAgent(this.mUserAgent).cookies(getCookieMap()).method(GET).execute();
+                mClient.execute(mClient.connect(URL_LOGOUT).method(GET));
             }
         } catch (Exception e) {
             logger.warn("logout failed", e);
             AnalyticsHelper.sendException(c, e, true);
         }
-        mCookies.getCookieStore().removeAll();
+        mClient.clearCookies();
+        mSessionValidated = 0;
+    }
+
+    /**
+     * acquires a lease on the shared KUSSS session, workers of one sync cycle share one login, the
+     * session is logged out after the last lease was released, see {@link #releaseSession(Context)}
+     *
+     * @param c       context
+     * @param account KUSSS account
+     * @return true if session is available
+     */
+    public synchronized boolean acquireSession(Context c, Account account) {
+        if (mPendingLogout != null) {
+            mPendingLogout.cancel(false);
+            mPendingLogout = null;
+        }
+
+        if (mSessionValidated > 0 &&
+                SystemClock.elapsedRealtime() - mSessionValidated < SESSION_VALIDATION_INTERVAL &&
+                !TextUtils.isEmpty(mClient.getSessionId()) &&
+                isConnected(c)) {
+            mSessionLeases++;
+            logger.debug("reuse session, {} leases", mSessionLeases);
+            return true;
+        }
+
+        if (isAvailable(c,
+                AppUtils.getAccountAuthToken(c, account),
+                AppUtils.getAccountName(account),
+                AppUtils.getAccountPassword(c, account))) {
+            mSessionValidated = SystemClock.elapsedRealtime();
+            mSessionLeases++;
+            logger.debug("session acquired, {} leases", mSessionLeases);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * releases a lease acquired with {@link #acquireSession(Context, Account)}, logout is delayed so
+     * following workers can reuse the session
+     *
+     * @param c context
+     */
+    public synchronized void releaseSession(Context c) {
+        if (mSessionLeases > 0) {
+            mSessionLeases--;
+        }
+        logger.debug("session released, {} leases", mSessionLeases);
+
+        if (mSessionLeases == 0) {
+            schedulePendingLogout(c);
+        }
+    }
+
+    private synchronized void schedulePendingLogout(Context c) {
+        if (mPendingLogout != null) {
+            mPendingLogout.cancel(false);
+        }
+
+        final Context appContext = c.getApplicationContext();
+        mPendingLogout = mSessionExecutor.schedule(() -> logoutIfUnused(appContext), SESSION_LOGOUT_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void logoutIfUnused(Context c) {
+        mPendingLogout = null;
+        if (mSessionLeases == 0) {
+            logger.debug("logout unused session");
+            logout(c);
+        }
     }
 
     public synchronized boolean isLoggedIn(Context c, String sessionId) {
@@ -271,7 +321,7 @@ public class KusssHandler {
             return false;
         }
         try {
-            Document doc = getDocument(Jsoup.connect(URL_KUSSS_INDEX).userAgent(this.mUserAgent).cookies(getCookieMap()).timeout(TIMEOUT_LOGIN).followRedirects(true));
+            Document doc = mClient.get(mClient.connect(URL_KUSSS_INDEX).timeout(TIMEOUT_LOGIN).followRedirects(true));
 
             return isLoggedIn(c, doc);
         } catch (SocketTimeoutException e) {
@@ -317,25 +367,61 @@ public class KusssHandler {
         if (loadAll) {
             List<Term> terms = getTerms(c);
             for (Term term : terms) {
-                calendars.add(new KusssCalendar(CalendarUtils.getCalendarName(c, calendarName), term, getUidPrefix(calendarName), term.equals(currentTerm), loadIcal(c, calendarBuilder, calendarName, term)));
+                calendars.add(newKusssCalendar(c, calendarBuilder, calendarName, term, term.equals(currentTerm)));
             }
         } else {
-            calendars.add(new KusssCalendar(CalendarUtils.getCalendarName(c, calendarName), currentTerm, getUidPrefix(calendarName), true, loadIcal(c, calendarBuilder, calendarName, currentTerm)));
-
-            Term nextTerm = Term.fromDate(new Date(date.getTime() + (4 * DateUtils.WEEK_IN_MILLIS)));
-            if (!nextTerm.equals(currentTerm)) {
-                calendars.add(new KusssCalendar(CalendarUtils.getCalendarName(c, calendarName), nextTerm, getUidPrefix(calendarName), false, loadIcal(c, calendarBuilder, calendarName, nextTerm)));
+            for (Term term : getCalendarTerms(date)) {
+                calendars.add(newKusssCalendar(c, calendarBuilder, calendarName, term, term.equals(currentTerm)));
             }
         }
 
         return calendars;
     }
 
-    private Calendar loadIcal(Context c, CalendarBuilder calendarBuilder, String calendarName, Term term) {
+    private KusssCalendar newKusssCalendar(Context c, CalendarBuilder calendarBuilder, String calendarName, Term term, boolean mandatory) {
+        String endpoint = getIcalEndpoint(calendarName, term);
+        List<ICalEvent> events = loadIcal(c, calendarBuilder, calendarName, term);
+
+        return new KusssCalendar(CalendarUtils.getCalendarName(c, calendarName), term, getUidPrefix(calendarName), mandatory, events,
+                endpoint, events == null && isUnchanged(c, endpoint));
+    }
+
+    private static String getIcalEndpoint(String calendarName, Term term) {
+        return ENDPOINT_ICAL_PREFIX + calendarName + "_" + term.toString();
+    }
+
+    /**
+     * @param date sync date
+     * @return current term and next term if it starts within 4 weeks
+     */
+    private List<Term> getCalendarTerms(Date date) {
+        List<Term> terms = new ArrayList<>();
+
+        Term currentTerm = Term.fromDate(date);
+        terms.add(currentTerm);
+
+        Term nextTerm = Term.fromDate(new Date(date.getTime() + (4 * DateUtils.WEEK_IN_MILLIS)));
+        if (!nextTerm.equals(currentTerm)) {
+            terms.add(nextTerm);
+        }
+        return terms;
+    }
+
+    private List<ICalEvent> loadIcal(Context c, CalendarBuilder calendarBuilder, String calendarName, Term term) {
         if (calendarName == null) {
             return null;
         }
-        if (!isLoggedIn(c, getSessionIDFromCookie())) {
+
+        synchronized (this) {
+            String key = getTermWalkCalendarKey(calendarName, term);
+            if (mTermWalk != null && mTermWalk.isValid() && mTermWalk.mCalendars.containsKey(key)) {
+                logger.debug("use calendar from term walk: {}", key);
+                return mTermWalk.mCalendars.remove(key);
+            }
+        }
+        getFingerprints(c).reset(getIcalEndpoint(calendarName, term));
+
+        if (!isLoggedIn(c, mClient.getSessionId())) {
             return null;
         }
 
@@ -343,7 +429,7 @@ public class KusssHandler {
             if (!selectTerm(c, term)) {
                 return null;
             }
-            Document doc = getDocument(Jsoup.connect(URL_GET_ICAL_FORM).userAgent(this.mUserAgent).cookies(getCookieMap()).timeout(TIMEOUT_LOGIN).followRedirects(true));
+            Document doc = mClient.get(mClient.connect(URL_GET_ICAL_FORM).timeout(TIMEOUT_LOGIN).followRedirects(true));
             if (!isSelectable(c, doc, term)) {
                 return null;
             }
@@ -355,28 +441,31 @@ public class KusssHandler {
             return null;
         }
 
-        return loadIcalJsoup(c, calendarBuilder, calendarName);
+        return loadIcalJsoup(c, calendarBuilder, calendarName, getIcalEndpoint(calendarName, term));
     }
 
-    private Calendar loadIcalFromFile(Context c, CalendarBuilder calendarBuilder, String calendarname) {
-        Calendar iCal;
+    private List<ICalEvent> loadIcalFromFile(Context c, CalendarBuilder calendarBuilder, String calendarname) {
+        final List<ICalEvent> events = new ArrayList<>();
 
         try (InputStream assetData = new BufferedInputStream(c.getAssets().open("kusss.ics"))) {
-            iCal = calendarBuilder.build(assetData);
+            new ICalEventParser(calendarBuilder.getRegistry()).parse(assetData, Charset.defaultCharset(), events::add);
         } catch (IOException e) {
             e.printStackTrace();
-            iCal = null;
+            return null;
         } catch (ParserException e) {
             e.printStackTrace();
-            iCal = null;
+            return null;
         }
-        return iCal;
+        return events;
     }
 
-    private Calendar loadIcalJsoup(Context c, CalendarBuilder calendarBuilder, String calendarName) {
-        Connection connection = Jsoup.connect(URL_GET_ICAL)
-                .userAgent(this.mUserAgent)
-                .cookies(getCookieMap())
+    /**
+     * streams the iCal of the selected term into a list of events, see {@link ICalEventParser}
+     *
+     * @return events or null if loading failed or calendar is unchanged, see {@link #isUnchanged(Context, String)}
+     */
+    private List<ICalEvent> loadIcalJsoup(Context c, CalendarBuilder calendarBuilder, String calendarName, String endpoint) {
+        Connection connection = mClient.connect(URL_GET_ICAL)
                 .timeout(TIMEOUT_CALENDAR_READ)
                 .method(POST);
         switch (calendarName) {
@@ -391,31 +480,42 @@ public class KusssHandler {
             }
         }
 
-        Calendar iCal;
-        String body = null;
+        final KusssFingerprints fingerprints = getFingerprints(c);
+        fingerprints.reset(endpoint);
+
+        final List<ICalEvent> events = new ArrayList<>();
         String contentType = null;
         try {
-            Connection.Response response = connection.execute();
+            Connection.Response response = mClient.executeStreamed(connection);
 
-            contentType = response.contentType();
-            if (!contentType.contains("text/calendar")) {
-                throw new UnsupportedOperationException("wrong content type");
-            }
+            try (InputStream body = response.bodyStream()) {
+                final boolean validators = KusssFingerprints.hasValidators(response);
+                if (validators && fingerprints.update(endpoint, response)) {
+                    logger.debug("{} unchanged", endpoint);
+                    return null;
+                }
+                // without validators the body hash is calculated while parsing
+                final MessageDigest digest = validators ? null : KusssFingerprints.newDigest();
 
-            body = response.body();
-            if (!TextUtils.isEmpty(body)) {
-                String charset = response.charset() != null ? response.charset() : Charset.defaultCharset().name();
-                ByteArrayInputStream calStream = new ByteArrayInputStream(body.getBytes(charset));
-                // breaks when upgrading commons.lang3 > 3.9
-                iCal = calendarBuilder.build(calStream);
-            } else {
-                iCal = new Calendar();
+                contentType = response.contentType();
+                if (contentType == null || !contentType.contains("text/calendar")) {
+                    throw new UnsupportedOperationException("wrong content type");
+                }
+
+                Charset charset = response.charset() != null ? Charset.forName(response.charset()) : Charset.defaultCharset();
+                new ICalEventParser(calendarBuilder.getRegistry()).parse(digest != null ? new DigestInputStream(body, digest) : body,
+                        charset, events::add);
+
+                if (digest != null && fingerprints.update(endpoint, digest)) {
+                    logger.debug("{} unchanged", endpoint);
+                    return null;
+                }
             }
         } catch (ParserException | IOException e) {
-            AnalyticsHelper.sendException(c, e, true, "loadIcalJsoup", contentType, body);
-            iCal = null;
+            AnalyticsHelper.sendException(c, e, true, "loadIcalJsoup", contentType, String.format(Locale.ROOT, "%d events", events.size()));
+            return null;
         }
-        return iCal;
+        return events;
     }
 
     private List<Term> getTerms(Context c) {
@@ -438,13 +538,13 @@ public class KusssHandler {
     }
 
     private Map<String, String> getTermMap(Context c) {
-        if (!isLoggedIn(c, getSessionIDFromCookie())) {
+        if (!isLoggedIn(c, mClient.getSessionId())) {
             return null;
         }
 
         Map<String, String> terms = new HashMap<>();
         try {
-            Document doc = getDocument(Jsoup.connect(URL_GET_TERMS).userAgent(this.mUserAgent).cookies(getCookieMap()));
+            Document doc = mClient.get(mClient.connect(URL_GET_TERMS));
             Element termDropdown = doc.getElementById("term");
             if (termDropdown != null) {
                 Elements termDropdownEntries = termDropdown
@@ -463,13 +563,11 @@ public class KusssHandler {
     }
 
     private boolean selectTerm(Context c, Term term) throws IOException {
-        if (!isLoggedIn(c, getSessionIDFromCookie())) {
+        if (!isLoggedIn(c, mClient.getSessionId())) {
             return false;
         }
-        postAndGetDocument(
-                Jsoup.connect(URL_SELECT_TERM)
-                        .userAgent(this.mUserAgent)
-                        .cookies(getCookieMap())
+        mClient.post(
+                mClient.connect(URL_SELECT_TERM)
                         .data("term", term.toString())
                         .data("previousQueryString", "")
                         .data("reloadAction", "coursecatalogue-start.action")
@@ -486,7 +584,14 @@ public class KusssHandler {
         if (terms == null || terms.size() == 0) {
             return null;
         }
-        if (!isLoggedIn(c, getSessionIDFromCookie())) {
+        synchronized (this) {
+            if (mTermWalk != null && mTermWalk.isValid() && mTermWalk.mCourseTerms.containsAll(terms)) {
+                logger.debug("use courses from term walk");
+                return mTermWalk.takeCourses(terms);
+            }
+        }
+
+        if (!isLoggedIn(c, mClient.getSessionId())) {
             return null;
         }
 
@@ -497,7 +602,7 @@ public class KusssHandler {
             for (Term term : terms) {
                 term.setLoaded(false); // init loaded flag
                 if (selectTerm(c, term)) {
-                    Document doc = getDocument(Jsoup.connect(URL_MY_LVAS).userAgent(this.mUserAgent).cookies(getCookieMap()));
+                    Document doc = mClient.get(mClient.connect(URL_MY_LVAS));
 
                     if (isSelectable(c, doc, term)) {
                         if (isSelected(c, doc, term)) {
@@ -530,6 +635,85 @@ public class KusssHandler {
         return courses;
     }
 
+    /**
+     * selects every term only once and loads courses and calendars of this term while it is selected,
+     * results are used once by {@link #getLvas(Context, List)} and {@link #getIcal(Context, CalendarBuilder, String, Date, boolean)}
+     * within the next {@link #TERM_WALK_VALIDITY} ms, later calls load from KUSSS again
+     *
+     * @param c               context
+     * @param calendarBuilder builder for calendars
+     * @param courseTerms     terms to load courses for
+     * @param calendarNames   calendars to load for current and next term
+     * @param date            sync date for calendars
+     * @return true if all terms have been loaded
+     */
+    public synchronized boolean walkTerms(Context c, CalendarBuilder calendarBuilder, List<Term> courseTerms, List<String> calendarNames, Date date) {
+        mTermWalk = null;
+
+        if (!isLoggedIn(c, mClient.getSessionId())) {
+            return false;
+        }
+
+        List<Term> calendarTerms = calendarNames.isEmpty() ? new ArrayList<>() : getCalendarTerms(date);
+
+        Set<Term> terms = new TreeSet<>(courseTerms);
+        terms.addAll(calendarTerms);
+
+        TermWalk termWalk = new TermWalk();
+        try {
+            for (Term term : terms) {
+                logger.debug("walk term {}", term);
+
+                if (!selectTerm(c, term)) {
+                    return false;
+                }
+                Document doc = mClient.get(mClient.connect(URL_MY_LVAS));
+
+                boolean selectable = isSelectable(c, doc, term);
+                if (selectable && !isSelected(c, doc, term)) {
+                    throw new IOException(String.format("term not selected: %s", term));
+                }
+
+                if (courseTerms.contains(term)) {
+                    termWalk.mCourseTerms.add(term);
+                    if (selectable) {
+                        Elements rows = doc.select(SELECT_MY_LVAS);
+                        for (Element row : rows) {
+                            Course course = new Course(c, term, row);
+                            if (course.isInitialized()) {
+                                termWalk.mCourses.add(course);
+                            }
+                        }
+                        termWalk.mLoadedTerms.add(term);
+                    }
+                }
+
+                if (calendarTerms.contains(term)) {
+                    for (String calendarName : calendarNames) {
+                        String endpoint = getIcalEndpoint(calendarName, term);
+                        if (!selectable) {
+                            getFingerprints(c).reset(endpoint);
+                        }
+                        termWalk.mCalendars.put(getTermWalkCalendarKey(calendarName, term),
+                                selectable ? loadIcalJsoup(c, calendarBuilder, calendarName, endpoint) : null);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            AnalyticsHelper.sendException(c, e, true);
+            return false;
+        }
+
+        logger.debug("term walk: {} terms, {} courses, {} calendars", terms.size(), termWalk.mCourses.size(), termWalk.mCalendars.size());
+
+        mTermWalk = termWalk;
+        return true;
+    }
+
+    private static String getTermWalkCalendarKey(String calendarName, Term term) {
+        return calendarName + "-" + term.toString();
+    }
+
     private boolean isSelectable(Context c, Document doc, Term term) {
         try {
             Element termSelector = doc.getElementById("term");
@@ -561,12 +745,30 @@ public class KusssHandler {
     }
 
     public List<Assessment> getAssessments(Context c) {
+        return getAssessments(c, false);
+    }
+
+    /**
+     * @param c             context
+     * @param skipUnchanged don't parse page if it is unchanged, check {@link #isUnchanged(Context, String)} with {@link #ENDPOINT_ASSESSMENTS} before using the result
+     * @return assessments, empty if unchanged or null on failure
+     */
+    public List<Assessment> getAssessments(Context c, boolean skipUnchanged) {
         if (!isConnected(c)) {
             return null;
         }
         List<Assessment> grades = new ArrayList<>();
         try {
-            Document doc = getDocument(Jsoup.connect(URL_MY_GRADES).userAgent(this.mUserAgent).cookies(getCookieMap()).data("months", "0"));
+            Connection connection = mClient.connect(URL_MY_GRADES).data("months", "0").method(GET);
+            if (skipUnchanged) {
+                getFingerprints(c).addConditionalHeaders(ENDPOINT_ASSESSMENTS, connection);
+            }
+            Connection.Response response = mClient.execute(connection);
+            if (skipUnchanged && getFingerprints(c).update(ENDPOINT_ASSESSMENTS, response)) {
+                logger.debug("grades unchanged");
+                return grades;
+            }
+            Document doc = mClient.parse(response);
 
             if (isLoggedIn(c, doc)) {
                 Elements rows = doc.select(SELECT_MY_GRADES);
@@ -597,17 +799,27 @@ public class KusssHandler {
         return grades;
     }
 
-    public List<Exam> getNewExams(Context c) {
+    /**
+     * @param c             context
+     * @param skipUnchanged don't parse pages if they are unchanged, check {@link #isUnchanged(Context, String)} with {@link #ENDPOINT_EXAMS} before using the result
+     * @return exams, empty if unchanged or null on failure
+     */
+    public List<Exam> getNewExams(Context c, boolean skipUnchanged) {
         if (!isConnected(c)) {
             return null;
         }
         List<Exam> exams = new ArrayList<>();
         try {
-            Document doc = getDocument(
-                    Jsoup.connect(URL_GET_NEW_EXAMS)
-                            .userAgent(this.mUserAgent)
-                            .cookies(getCookieMap())
-                            .data("search", "true").data("searchType", "mylvas"));
+            Connection.Response newExamsResponse = mClient.execute(
+                    mClient.connect(URL_GET_NEW_EXAMS)
+                            .data("search", "true").data("searchType", "mylvas").method(GET));
+            Connection.Response examsResponse = mClient.execute(mClient.connect(URL_GET_EXAMS).method(GET));
+            if (skipUnchanged && getFingerprints(c).update(ENDPOINT_EXAMS, newExamsResponse, examsResponse)) {
+                logger.debug("exams unchanged");
+                return exams;
+            }
+
+            Document doc = mClient.parse(newExamsResponse);
             if (isLoggedIn(c, doc)) {
                 Elements rows = doc.select(SELECT_NEW_EXAMS);
 
@@ -629,7 +841,7 @@ public class KusssHandler {
                 }
 
                 // add registered exams
-                loadExams(c, exams);
+                parseExams(c, mClient.parse(examsResponse), exams);
             } else {
                 exams = null;
             }
@@ -641,7 +853,7 @@ public class KusssHandler {
     }
 
     public List<Exam> getNewExamsByCourseId(Context c, List<Course> courses, List<Term> terms) {
-        if (!isLoggedIn(c, getSessionIDFromCookie())) {
+        if (!isLoggedIn(c, mClient.getSessionId())) {
             return null;
         }
 
@@ -708,10 +920,7 @@ public class KusssHandler {
             final SimpleDateFormat df = new SimpleDateFormat("dd.MM.yyyy", Locale.GERMAN);
 
             logger.debug("getNewExamsByCourseId: {}", courseId);
-            Document doc = postAndGetDocument(Jsoup
-                    .connect(URL_GET_NEW_EXAMS)
-                    .userAgent(this.mUserAgent)
-                    .cookies(getCookieMap())
+            Document doc = mClient.post(mClient.connect(URL_GET_NEW_EXAMS)
                     .timeout(TIMEOUT_SEARCH_EXAM_BY_LVA)
                     .data("search", "true")
                     .data("searchType", "specific")
@@ -760,8 +969,10 @@ public class KusssHandler {
 
         logger.debug("loadExams");
 
-        Document doc = getDocument(Jsoup.connect(URL_GET_EXAMS).userAgent(this.mUserAgent).cookies(getCookieMap()));
+        parseExams(c, mClient.get(mClient.connect(URL_GET_EXAMS)), exams);
+    }
 
+    private void parseExams(Context c, Document doc, List<Exam> exams) {
         if (isLoggedIn(c, doc)) {
             Elements rows = doc.select(SELECT_EXAMS);
 
@@ -783,14 +994,28 @@ public class KusssHandler {
         }
     }
 
-    public List<Curriculum> getCurricula(Context c) {
+    /**
+     * @param c             context
+     * @param skipUnchanged don't parse page if it is unchanged, check {@link #isUnchanged(Context, String)} with {@link #ENDPOINT_CURRICULA} before using the result
+     * @return curricula, empty if unchanged or null on failure
+     */
+    public List<Curriculum> getCurricula(Context c, boolean skipUnchanged) {
         if (!isConnected(c)) {
             return null;
         }
         try {
             List<Curriculum> mCurricula = new ArrayList<>();
 
-            Document doc = getDocument(Jsoup.connect(URL_MY_STUDIES).userAgent(this.mUserAgent).cookies(getCookieMap()));
+            Connection connection = mClient.connect(URL_MY_STUDIES).method(GET);
+            if (skipUnchanged) {
+                getFingerprints(c).addConditionalHeaders(ENDPOINT_CURRICULA, connection);
+            }
+            Connection.Response response = mClient.execute(connection);
+            if (skipUnchanged && getFingerprints(c).update(ENDPOINT_CURRICULA, response)) {
+                logger.debug("curricula unchanged");
+                return mCurricula;
+            }
+            Document doc = mClient.parse(response);
 
             if (isLoggedIn(c, doc)) {
                 Elements rows = doc.select(SELECT_MY_STUDIES);
@@ -810,9 +1035,43 @@ public class KusssHandler {
         }
     }
 
-    public void setUserAgent(String userAgent) {
-        if (!TextUtils.isEmpty(userAgent)) {
-            this.mUserAgent = userAgent;
+    private static class TermWalk {
+        private final long mCreated = SystemClock.elapsedRealtime();
+        private final Set<Term> mCourseTerms = new HashSet<>();
+        private final Set<Term> mLoadedTerms = new HashSet<>();
+        private final List<Course> mCourses = new ArrayList<>();
+        private final Map<String, List<ICalEvent>> mCalendars = new HashMap<>();
+
+        private boolean isValid() {
+            return SystemClock.elapsedRealtime() - mCreated < TERM_WALK_VALIDITY;
         }
+
+        /**
+         * returns courses of terms and removes all courses from the walk, like calendars they are used only once
+         */
+        private List<Course> takeCourses(List<Term> terms) {
+            List<Course> courses = new ArrayList<>();
+            for (Term term : terms) {
+                term.setLoaded(mLoadedTerms.contains(term));
+            }
+            for (Course course : mCourses) {
+                if (terms.contains(course.getTerm())) {
+                    courses.add(course);
+                }
+            }
+            mCourseTerms.clear();
+            mLoadedTerms.clear();
+            mCourses.clear();
+
+            if (courses.size() == 0) {
+                // a student without courses is a quite impossible case
+                return null;
+            }
+            return courses;
+        }
+    }
+
+    public void setUserAgent(String userAgent) {
+        mClient.setUserAgent(userAgent);
     }
 }
@@ -26,11 +26,9 @@
 package org.voidsink.anewjkuapp.mensa;
 
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.text.format.DateUtils;
+import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
-import androidx.preference.PreferenceManager;
 
 import org.jsoup.Connection;
 import org.jsoup.Jsoup;
@@ -38,9 +36,9 @@ import org.jsoup.internal.StringUtil;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
-import org.voidsink.anewjkuapp.BuildConfig;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
 
+import java.net.HttpURLConnection;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -50,12 +48,17 @@ import java.util.Locale;
 
 import static org.jsoup.Connection.Method.GET;
 
-public abstract class BaseMenuLoader {
+public abstract class BaseMenuLoader implements MenuLoader {
 
-    private static final String PREF_DATA_PREFIX = "MENSA_DATA_";
-    private static final String PREF_DATE_PREFIX = "MENSA_DATE_";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
 
-    private static final SimpleDateFormat df = new SimpleDateFormat("dd.MM.yyyy", Locale.GERMAN);
+    // loaders run in parallel, SimpleDateFormat is not thread-safe
+    private final SimpleDateFormat df = new SimpleDateFormat("dd.MM.yyyy", Locale.GERMAN);
+
+    private String mETag = null;
+    private String mLastModified = null;
+    private boolean mNotModified = false;
 
     protected double parsePrice(NumberFormat nf, String value) {
         try {
@@ -80,43 +83,74 @@ public abstract class BaseMenuLoader {
         return StringUtil.releaseBuilder(sb).trim();
     }
 
-    protected Document getData(@NonNull Context context) {
-        String html = null;
-        String cacheDateKey = PREF_DATE_PREFIX + getCacheKey();
-        String cacheDataKey = PREF_DATA_PREFIX + getCacheKey();
-
-        SharedPreferences sp = PreferenceManager
-                .getDefaultSharedPreferences(context);
-        if (!BuildConfig.DEBUG && (sp.getLong(cacheDateKey, 0) > (System.currentTimeMillis() - 6 * DateUtils.HOUR_IN_MILLIS))) {
-            html = sp.getString(cacheDataKey, null);
-        }
+    /**
+     * validators of the cached page, sent as If-None-Match and If-Modified-Since with the next download
+     */
+    void setValidators(String eTag, String lastModified) {
+        this.mETag = eTag;
+        this.mLastModified = lastModified;
+    }
+
+    String getETag() {
+        return mETag;
+    }
 
-        if (html == null) {
-            try {
-                Connection connection = getConnection(getUrl());
-                if (connection != null) {
-                    html = connection.execute().body();
+    String getLastModified() {
+        return mLastModified;
+    }
+
+    /**
+     * @return true if the server confirmed the validators on last {@link #getData(Context)}
+     */
+    boolean isNotModified() {
+        return mNotModified;
+    }
 
-                    SharedPreferences.Editor editor = sp.edit();
-                    editor.putString(cacheDataKey, html);
-                    editor.putLong(cacheDateKey, System.currentTimeMillis());
-                    editor.apply();
+    /**
+     * @return parsed page or null if loading failed or the page was not modified
+     */
+    protected Document getData(@NonNull Context context) {
+        final String cacheKey = getCacheKey();
+        mNotModified = false;
+
+        // loaders sharing a cache key fetch and parse the page only once
+        synchronized (DocumentCache.getLock(cacheKey)) {
+            DocumentCache.Entry entry = DocumentCache.get(cacheKey);
+            if (entry == null || !entry.matches(mETag, mLastModified)) {
+                try {
+                    Connection connection = getConnection(getUrl());
+                    if (connection == null) {
+                        return null;
+                    }
+
+                    boolean conditional = false;
+                    if (!TextUtils.isEmpty(mETag)) {
+                        connection.header("If-None-Match", mETag);
+                        conditional = true;
+                    }
+                    if (!TextUtils.isEmpty(mLastModified)) {
+                        connection.header("If-Modified-Since", mLastModified);
+                        conditional = true;
+                    }
+
+                    Connection.Response response = connection.execute();
+                    if (conditional && response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                        entry = DocumentCache.put(cacheKey, null, mETag, mLastModified);
+                    } else {
+                        entry = DocumentCache.put(cacheKey, response.parse(),
+                                response.header(HEADER_ETAG), response.header(HEADER_LAST_MODIFIED));
+                    }
+                } catch (Exception e) {
+                    AnalyticsHelper.sendException(context, e, false, cacheKey, getUrl());
+                    return null;
                 }
-            } catch (Exception e) {
-                AnalyticsHelper.sendException(context, e, false);
-                html = sp.getString(cacheDataKey, null);
             }
-        }
-        try {
-            return html != null ? Jsoup.parse(html) : null;
-        } catch (Exception e) {
-            AnalyticsHelper.sendException(context, e, true, getCacheKey(), getUrl());
 
-            SharedPreferences.Editor editor = sp.edit();
-            editor.putLong(cacheDateKey, 0);
-            editor.apply();
+            mETag = entry.getETag();
+            mLastModified = entry.getLastModified();
+            mNotModified = entry.getDocument() == null;
 
-            return null;
+            return entry.getDocument();
         }
     }
 
@@ -29,48 +29,46 @@ import android.content.Context;
 import android.text.TextUtils;
 
 import org.jsoup.nodes.Element;
+import org.jsoup.select.Collector;
 import org.jsoup.select.Elements;
 import org.voidsink.anewjkuapp.R;
 
+import java.util.List;
 import java.util.Locale;
 
 public class ChoiceMenuLoader extends MensenMenuLoader {
 
     @Override
-    protected void addCategories(Context c, MensaDay day, Elements categories) {
-        for (Element category : categories) {
-            // filter choice
-            String categoryTitle = text(category.getElementsByTag("h2"), " ");
-            if (!TextUtils.isEmpty(categoryTitle) && isMatchingCategoryTitle(categoryTitle)) {
-                Elements paragraphs = category.getElementsByTag("p");
-                String name = null;
-                StringBuilder meal = new StringBuilder();
-                boolean hasData = false;
+    protected void addCategories(Context c, MensaDay day, List<Category> categories) {
+        for (Category category : categories) {
+            Elements paragraphs = Collector.collect(PARAGRAPHS, category.getElement());
+            String name = null;
+            StringBuilder meal = new StringBuilder();
+            boolean hasData = false;
 
-                for (int i = 0; i < paragraphs.size(); i++) {
-                    String newName = parseName(paragraphs.get(i));
-                    if (newName != null) {
-                        if (hasData) {
-                            day.addMenu(new MensaMenu(name, null, meal.toString().trim(), 0, 0, 0));
-                        }
-                        name = newName;
-                        meal.setLength(0);
-                        hasData = false;
-
-                        continue;
-                    } else {
-                        String text = paragraphs.get(i).text().trim();
-                        if (!TextUtils.isEmpty(text)) {
-                            meal.append("\r\n");
-                            meal.append(text);
-                            hasData = true;
-                        }
+            for (int i = 0; i < paragraphs.size(); i++) {
+                String newName = parseName(paragraphs.get(i));
+                if (newName != null) {
+                    if (hasData) {
+                        day.addMenu(new MensaMenu(name, null, meal.toString().trim(), 0, 0, 0));
                     }
+                    name = newName;
+                    meal.setLength(0);
+                    hasData = false;
 
-                    if (hasData && (i == paragraphs.size() - 1)) {
-                        day.addMenu(new MensaMenu(name, null, meal.toString().trim(), 0, 0, 0));
+                    continue;
+                } else {
+                    String text = paragraphs.get(i).text().trim();
+                    if (!TextUtils.isEmpty(text)) {
+                        meal.append("\r\n");
+                        meal.append(text);
+                        hasData = true;
                     }
                 }
+
+                if (hasData && (i == paragraphs.size() - 1)) {
+                    day.addMenu(new MensaMenu(name, null, meal.toString().trim(), 0, 0, 0));
+                }
             }
         }
     }
@@ -94,11 +92,6 @@ public class ChoiceMenuLoader extends MensenMenuLoader {
         return null;
     }
 
-    @Override
-    protected String getCacheKey() {
-        return Mensen.MENSA_CHOICE;
-    }
-
     @Override
     protected String getMensaKey() {
         return Mensen.MENSA_CHOICE;
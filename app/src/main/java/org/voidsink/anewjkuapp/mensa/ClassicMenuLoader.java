@@ -28,13 +28,13 @@ package org.voidsink.anewjkuapp.mensa;
 import android.content.Context;
 import android.text.TextUtils;
 
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.jsoup.select.Collector;
 import org.voidsink.anewjkuapp.R;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
 
 import java.text.NumberFormat;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -42,14 +42,14 @@ import java.util.regex.Matcher;
 public class ClassicMenuLoader extends MensenMenuLoader {
 
     @Override
-    protected void addCategories(Context c, MensaDay day, Elements categories) {
+    protected void addCategories(Context c, MensaDay day, List<Category> categories) {
         Set<String> titles = new HashSet<>();
-        for (Element category : categories) {
+        for (Category category : categories) {
             // filter classic menu 1 and classic menu 2
             try {
-                String categoryTitle = text(category.getElementsByTag("h2"), " ");
-                if (!TextUtils.isEmpty(categoryTitle) && isMatchingCategoryTitle(categoryTitle) && !titles.contains(categoryTitle)) {
-                    String meal = text(category.getElementsByTag("p"));
+                String categoryTitle = category.getTitle();
+                if (!titles.contains(categoryTitle)) {
+                    String meal = text(Collector.collect(PARAGRAPHS, category.getElement()));
 
                     double price = 0;
 
@@ -68,7 +68,7 @@ public class ClassicMenuLoader extends MensenMenuLoader {
                     titles.add(categoryTitle);
                 }
             } catch (Exception e) {
-                AnalyticsHelper.sendException(c, e, false, category.text());
+                AnalyticsHelper.sendException(c, e, false, category.getElement().text());
             }
         }
 
@@ -79,11 +79,6 @@ public class ClassicMenuLoader extends MensenMenuLoader {
         return categoryTitle.toUpperCase(Locale.getDefault()).contains("CLASSIC");
     }
 
-    @Override
-    protected String getCacheKey() {
-        return Mensen.MENSA_CLASSIC;
-    }
-
     @Override
     protected String getMensaKey() {
         return Mensen.MENSA_CLASSIC;
@@ -0,0 +1,149 @@
+/*
+ *       ____.____  __.____ ___     _____
+ *      |    |    |/ _|    |   \   /  _  \ ______ ______
+ *      |    |      < |    |   /  /  /_\  \\____ \\____ \
+ *  /\__|    |    |  \|    |  /  /    |    \  |_> >  |_> >
+ *  \________|____|__ \______/   \____|__  /   __/|   __/
+ *                   \/                  \/|__|   |__|
+ *
+ *  Copyright (c) 2014-2020 Paul "Marunjar" Pretsch
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.voidsink.anewjkuapp.mensa;
+
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.text.format.DateUtils;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.jsoup.nodes.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Short-lived in-memory cache of parsed menu pages, so loaders sharing a cache key reuse one
+ * download and parse. A page that was not modified is remembered without document, for loaders
+ * asking with the same validators. Documents are handed out read-only, loaders must not modify them.
+ */
+final class DocumentCache {
+
+    private static final int MAX_DOCUMENTS = 3;
+    private static final long MAX_AGE = 2 * DateUtils.MINUTE_IN_MILLIS;
+
+    private static final LruCache<String, Entry> sDocuments = new LruCache<>(MAX_DOCUMENTS);
+    private static final Map<String, Object> sLocks = new HashMap<>();
+
+    private DocumentCache() {
+    }
+
+    /**
+     * @return lock to hold while loading and parsing data for cacheKey
+     */
+    @NonNull
+    static Object getLock(@NonNull String cacheKey) {
+        synchronized (sLocks) {
+            Object lock = sLocks.get(cacheKey);
+            if (lock == null) {
+                lock = new Object();
+                sLocks.put(cacheKey, lock);
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * @return last response for cacheKey if it is not expired
+     */
+    static Entry get(@NonNull String cacheKey) {
+        Entry entry = sDocuments.get(cacheKey);
+        if (entry == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - entry.created > MAX_AGE) {
+            sDocuments.remove(cacheKey);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * @param document parsed page or null if the page was not modified
+     */
+    @NonNull
+    static Entry put(@NonNull String cacheKey, @Nullable Document document, String eTag, String lastModified) {
+        Entry entry = new Entry(document, eTag, lastModified);
+        sDocuments.put(cacheKey, entry);
+        return entry;
+    }
+
+    /**
+     * @return data extracted from document by {@link #putExtract}, null if there is none or document is no longer cached
+     */
+    static Object getExtract(@NonNull String cacheKey, @NonNull Document document) {
+        Entry entry = sDocuments.get(cacheKey);
+        return entry != null && entry.document == document ? entry.extract : null;
+    }
+
+    /**
+     * keeps data extracted from document as long as document is cached
+     */
+    static void putExtract(@NonNull String cacheKey, @NonNull Document document, @NonNull Object extract) {
+        Entry entry = sDocuments.get(cacheKey);
+        if (entry != null && entry.document == document) {
+            entry.extract = extract;
+        }
+    }
+
+    static class Entry {
+
+        private final long created;
+        private final Document document;
+        private final String eTag;
+        private final String lastModified;
+        private volatile Object extract;
+
+        private Entry(Document document, String eTag, String lastModified) {
+            this.created = SystemClock.elapsedRealtime();
+            this.document = document;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        Document getDocument() {
+            return document;
+        }
+
+        String getETag() {
+            return eTag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return true if this response answers a request with given validators
+         */
+        boolean matches(String eTag, String lastModified) {
+            return document != null || (TextUtils.equals(this.eTag, eTag) && TextUtils.equals(this.lastModified, lastModified));
+        }
+    }
+}
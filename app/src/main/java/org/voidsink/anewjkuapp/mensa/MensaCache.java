@@ -0,0 +1,283 @@
+/*
+ *       ____.____  __.____ ___     _____
+ *      |    |    |/ _|    |   \   /  _  \ ______ ______
+ *      |    |      < |    |   /  /  /_\  \\____ \\____ \
+ *  /\__|    |    |  \|    |  /  /    |    \  |_> >  |_> >
+ *  \________|____|__ \______/   \____|__  /   __/|   __/
+ *                   \/                  \/|__|   |__|
+ *
+ *  Copyright (c) 2014-2020 Paul "Marunjar" Pretsch
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.voidsink.anewjkuapp.mensa;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.format.DateUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.core.util.AtomicFile;
+import androidx.preference.PreferenceManager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * Disk cache of loaded mensa weeks, one json file per mensa in the app's cache dir. Besides the
+ * week each file keeps the validators of the page and a hash of the week to detect changes.
+ */
+final class MensaCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(MensaCache.class);
+
+    private static final long MAX_AGE = 6 * DateUtils.HOUR_IN_MILLIS;
+
+    private static final String CACHE_DIR = "mensa";
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // menu pages were cached as html in default preferences before
+    private static final String LEGACY_PREF_DATA_PREFIX = "MENSA_DATA_";
+    private static final String LEGACY_PREF_DATE_PREFIX = "MENSA_DATE_";
+
+    private static final String JSON_VERSION = "version";
+    private static final String JSON_TIMESTAMP = "timestamp";
+    private static final String JSON_ETAG = "etag";
+    private static final String JSON_LAST_MODIFIED = "lastModified";
+    private static final String JSON_HASH = "hash";
+    private static final String JSON_KEY = "key";
+    private static final String JSON_NAME = "name";
+    private static final String JSON_DAYS = "days";
+    private static final String JSON_DATE = "date";
+    private static final String JSON_MENUS = "menus";
+    private static final String JSON_SOUP = "soup";
+    private static final String JSON_MEAL = "meal";
+    private static final String JSON_PRICE = "price";
+    private static final String JSON_PRICE_BIG = "priceBig";
+    private static final String JSON_OEH_BONUS = "oehBonus";
+
+    private static volatile boolean sLegacyRemoved = false;
+
+    private MensaCache() {
+    }
+
+    /**
+     * @return cached week of mensa key or null if there is none
+     */
+    @WorkerThread
+    static Entry read(@NonNull Context context, @NonNull String key) {
+        removeLegacyData(context);
+
+        AtomicFile file = getFile(context, key);
+        if (!file.getBaseFile().exists()) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(new String(file.readFully(), UTF_8));
+            if (json.getInt(JSON_VERSION) != VERSION) {
+                return null;
+            }
+
+            Mensa mensa = new Mensa(json.getString(JSON_KEY), getString(json, JSON_NAME));
+            JSONArray days = json.getJSONArray(JSON_DAYS);
+            for (int i = 0; i < days.length(); i++) {
+                JSONObject jsonDay = days.getJSONObject(i);
+
+                // date is parsed as yyyy/MM/dd
+                MensaDay day = new MensaDay(jsonDay);
+                JSONArray menus = jsonDay.getJSONArray(JSON_MENUS);
+                for (int j = 0; j < menus.length(); j++) {
+                    JSONObject jsonMenu = menus.getJSONObject(j);
+                    day.addMenu(new MensaMenu(getString(jsonMenu, JSON_NAME),
+                            getString(jsonMenu, JSON_SOUP),
+                            getString(jsonMenu, JSON_MEAL),
+                            jsonMenu.optDouble(JSON_PRICE, 0),
+                            jsonMenu.optDouble(JSON_PRICE_BIG, 0),
+                            jsonMenu.optDouble(JSON_OEH_BONUS, 0)));
+                }
+                mensa.addDay(day);
+            }
+            return new Entry(mensa, json.getLong(JSON_TIMESTAMP), getString(json, JSON_ETAG),
+                    getString(json, JSON_LAST_MODIFIED), getString(json, JSON_HASH));
+        } catch (IOException | JSONException e) {
+            logger.warn("read mensa cache {} failed", key, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * stores mensa with current time as timestamp
+     *
+     * @param eTag         ETag of the page mensa was extracted from
+     * @param lastModified Last-Modified of the page mensa was extracted from
+     * @return new entry, even if writing the file fails
+     */
+    @WorkerThread
+    @NonNull
+    static Entry write(@NonNull Context context, @NonNull IMensa mensa, String eTag, String lastModified) {
+        final SimpleDateFormat df = new SimpleDateFormat("yyyy/MM/dd", Locale.GERMAN);
+
+        final long timestamp = System.currentTimeMillis();
+        String hash = null;
+
+        AtomicFile file = getFile(context, mensa.getKey());
+        FileOutputStream out = null;
+        try {
+            JSONArray days = new JSONArray();
+            for (IDay day : mensa.getDays()) {
+                JSONArray menus = new JSONArray();
+                for (IMenu menu : day.getMenus()) {
+                    menus.put(new JSONObject()
+                            .put(JSON_NAME, menu.getName())
+                            .put(JSON_SOUP, menu.getSoup())
+                            .put(JSON_MEAL, menu.getMeal())
+                            .put(JSON_PRICE, menu.getPrice())
+                            .put(JSON_PRICE_BIG, menu.getPriceBig())
+                            .put(JSON_OEH_BONUS, menu.getOehBonus()));
+                }
+                days.put(new JSONObject()
+                        .put(JSON_DATE, day.getDate() != null ? df.format(day.getDate()) : null)
+                        .put(JSON_MENUS, menus));
+            }
+
+            hash = hash(days.toString());
+
+            JSONObject json = new JSONObject()
+                    .put(JSON_VERSION, VERSION)
+                    .put(JSON_TIMESTAMP, timestamp)
+                    .put(JSON_ETAG, eTag)
+                    .put(JSON_LAST_MODIFIED, lastModified)
+                    .put(JSON_HASH, hash)
+                    .put(JSON_KEY, mensa.getKey())
+                    .put(JSON_NAME, mensa.getName())
+                    .put(JSON_DAYS, days);
+
+            File dir = file.getBaseFile().getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                throw new IOException("cannot create " + dir);
+            }
+
+            out = file.startWrite();
+            out.write(json.toString().getBytes(UTF_8));
+            file.finishWrite(out);
+        } catch (IOException | JSONException e) {
+            logger.warn("write mensa cache {} failed", mensa.getKey(), e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+        return new Entry(mensa, timestamp, eTag, lastModified, hash);
+    }
+
+    private static String hash(String value) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(value.getBytes(UTF_8))) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            logger.warn("hash failed", e);
+            return null;
+        }
+    }
+
+    private static String getString(JSONObject json, String name) throws JSONException {
+        return json.isNull(name) ? null : json.getString(name);
+    }
+
+    @NonNull
+    private static AtomicFile getFile(@NonNull Context context, @NonNull String key) {
+        return new AtomicFile(new File(new File(context.getCacheDir(), CACHE_DIR), key + ".json"));
+    }
+
+    private static void removeLegacyData(@NonNull Context context) {
+        if (sLegacyRemoved) {
+            return;
+        }
+        sLegacyRemoved = true;
+
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = null;
+        for (String prefKey : sp.getAll().keySet()) {
+            if (prefKey.startsWith(LEGACY_PREF_DATA_PREFIX) || prefKey.startsWith(LEGACY_PREF_DATE_PREFIX)) {
+                if (editor == null) {
+                    editor = sp.edit();
+                }
+                editor.remove(prefKey);
+            }
+        }
+        if (editor != null) {
+            editor.apply();
+        }
+    }
+
+    static class Entry {
+
+        private final IMensa mensa;
+        private final long timestamp;
+        private final String eTag;
+        private final String lastModified;
+        private final String hash;
+
+        private Entry(IMensa mensa, long timestamp, String eTag, String lastModified, String hash) {
+            this.mensa = mensa;
+            this.timestamp = timestamp;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        IMensa getMensa() {
+            return mensa;
+        }
+
+        String getETag() {
+            return eTag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return hash of the week, null if unknown
+         */
+        String getHash() {
+            return hash;
+        }
+
+        boolean isFresh() {
+            long age = System.currentTimeMillis() - timestamp;
+            return age >= 0 && age < MAX_AGE;
+        }
+    }
+}
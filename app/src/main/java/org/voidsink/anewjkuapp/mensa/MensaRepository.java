@@ -0,0 +1,264 @@
+/*
+ *       ____.____  __.____ ___     _____
+ *      |    |    |/ _|    |   \   /  _  \ ______ ______
+ *      |    |      < |    |   /  /  /_\  \\____ \\____ \
+ *  /\__|    |    |  \|    |  /  /    |    \  |_> >  |_> >
+ *  \________|____|__ \______/   \____|__  /   __/|   __/
+ *                   \/                  \/|__|   |__|
+ *
+ *  Copyright (c) 2014-2020 Paul "Marunjar" Pretsch
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.voidsink.anewjkuapp.mensa;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import org.voidsink.anewjkuapp.BuildConfig;
+import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process wide store of loaded mensa weeks, shared by all screens showing menus. Loaded weeks are
+ * kept in {@link MensaCache} across restarts. Outdated weeks are served right away while they are
+ * revalidated in background, listeners are notified if a week actually changed.
+ */
+public final class MensaRepository {
+
+    // one thread per mensa, sources sharing a page wait for each other anyway
+    private static final int MAX_PARALLEL_LOADS = 5;
+    private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(MAX_PARALLEL_LOADS,
+            MAX_PARALLEL_LOADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    static {
+        sExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+    private static final Map<String, Entry> sEntries = new HashMap<>();
+    private static final Set<OnMensaLoadedListener> sChangedListeners = new CopyOnWriteArraySet<>();
+    private static volatile long sInvalidated = 0;
+
+    private MensaRepository() {
+    }
+
+    /**
+     * @param key one of {@link Mensen}
+     * @return week of mensa key, maybe outdated while it is revalidated, or null if loading failed
+     */
+    @WorkerThread
+    public static IMensa getMensa(@NonNull Context context, @NonNull String key) {
+        final Entry entry = getEntry(key);
+
+        synchronized (entry) {
+            if (!entry.read) {
+                entry.cached = MensaCache.read(context, key);
+                entry.read = true;
+            }
+
+            if (entry.cached == null) {
+                // nothing to show yet, wait for the page
+                BaseMenuLoader loader = createLoader(key);
+                IMensa mensa = loader.getMensa(context);
+                entry.checked = SystemClock.elapsedRealtime();
+
+                // loaders return an empty week if the page could not be loaded, try again on next access
+                if (mensa == null || mensa.isEmpty()) {
+                    return mensa;
+                }
+                entry.cached = MensaCache.write(context, mensa, loader.getETag(), loader.getLastModified());
+            } else if (!entry.revalidating && (BuildConfig.DEBUG || !entry.cached.isFresh() || entry.checked < sInvalidated)) {
+                revalidate(context.getApplicationContext(), key, entry);
+            }
+            return entry.cached.getMensa();
+        }
+    }
+
+    /**
+     * loads page of mensa again with conditional request, caller must hold lock of entry
+     */
+    private static void revalidate(@NonNull Context context, @NonNull String key, @NonNull Entry entry) {
+        final MensaCache.Entry cached = entry.cached;
+
+        entry.revalidating = true;
+        sExecutor.execute(() -> {
+            BaseMenuLoader loader = createLoader(key);
+            loader.setValidators(cached.getETag(), cached.getLastModified());
+            IMensa mensa = loader.getMensa(context);
+
+            boolean changed = false;
+            synchronized (entry) {
+                entry.revalidating = false;
+                entry.checked = SystemClock.elapsedRealtime();
+
+                if (loader.isNotModified()) {
+                    // keep week, restart freshness window
+                    entry.cached = MensaCache.write(context, cached.getMensa(), cached.getETag(), cached.getLastModified());
+                } else if (mensa != null && !mensa.isEmpty()) {
+                    entry.cached = MensaCache.write(context, mensa, loader.getETag(), loader.getLastModified());
+                    changed = entry.cached.getHash() == null || !TextUtils.equals(entry.cached.getHash(), cached.getHash());
+                }
+            }
+
+            if (changed) {
+                sHandler.post(() -> {
+                    for (OnMensaLoadedListener listener : sChangedListeners) {
+                        listener.onMensaLoaded(key);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @param listener called on main thread when a revalidated week differs from the week served before
+     */
+    public static void addOnMensaChangedListener(@NonNull OnMensaLoadedListener listener) {
+        sChangedListeners.add(listener);
+    }
+
+    public static void removeOnMensaChangedListener(@NonNull OnMensaLoadedListener listener) {
+        sChangedListeners.remove(listener);
+    }
+
+    /**
+     * Loads all mensen in parallel and waits at most timeout for them. Mensen still loading after
+     * that are left out of the result and reported to lateListener if they load a week.
+     *
+     * @param keys        mensen to load, see {@link Mensen}
+     * @param timeout     max time to wait in ms
+     * @param lateListener called on main thread for each mensa that missed the timeout and was loaded successfully
+     * @return loaded weeks in order of keys, null for mensen that failed to load
+     */
+    @WorkerThread
+    @NonNull
+    public static Map<String, IMensa> getMensen(@NonNull Context context, @NonNull List<String> keys,
+                                                long timeout, @Nullable OnMensaLoadedListener lateListener) {
+        final Context appContext = context.getApplicationContext();
+        final long deadline = SystemClock.elapsedRealtime() + timeout;
+
+        Map<String, Future<IMensa>> futures = new LinkedHashMap<>();
+        Map<String, AtomicBoolean> finished = new HashMap<>();
+        for (String key : keys) {
+            // whoever sets finished first owns the result, either the caller or the late listener
+            final AtomicBoolean done = new AtomicBoolean(false);
+            futures.put(key, sExecutor.submit(() -> {
+                IMensa mensa = getMensa(appContext, key);
+                // report only usable weeks, a failed source would be requested again right away
+                if (!done.compareAndSet(false, true) && lateListener != null && mensa != null && !mensa.isEmpty()) {
+                    sHandler.post(() -> lateListener.onMensaLoaded(key));
+                }
+                return mensa;
+            }));
+            finished.put(key, done);
+        }
+
+        Map<String, IMensa> mensen = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<IMensa>> future : futures.entrySet()) {
+            final String key = future.getKey();
+            try {
+                try {
+                    long remaining = Math.max(0, deadline - SystemClock.elapsedRealtime());
+                    mensen.put(key, future.getValue().get(remaining, TimeUnit.MILLISECONDS));
+                } catch (TimeoutException e) {
+                    if (!finished.get(key).compareAndSet(false, true)) {
+                        // finished right now
+                        mensen.put(key, future.getValue().get());
+                    }
+                }
+            } catch (ExecutionException e) {
+                AnalyticsHelper.sendException(appContext, e, false, key);
+                mensen.put(key, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return mensen;
+    }
+
+    /**
+     * revalidates all weeks on next access, until then the loaded weeks are served
+     */
+    public static void invalidate() {
+        sInvalidated = SystemClock.elapsedRealtime();
+    }
+
+    @NonNull
+    private static Entry getEntry(@NonNull String key) {
+        synchronized (sEntries) {
+            Entry entry = sEntries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                sEntries.put(key, entry);
+            }
+            return entry;
+        }
+    }
+
+    @NonNull
+    private static BaseMenuLoader createLoader(@NonNull String key) {
+        switch (key) {
+            case Mensen.MENSA_CLASSIC:
+                return new ClassicMenuLoader();
+            case Mensen.MENSA_TAGESTELLER:
+                return new TagestellerMenuLoader();
+            case Mensen.MENSA_CHOICE:
+                return new ChoiceMenuLoader();
+            case Mensen.MENSA_KHG:
+                return new KHGMenuLoader();
+            case Mensen.MENSA_RAAB:
+                return new RaabMenuLoader();
+            default:
+                throw new IllegalArgumentException("unknown mensa " + key);
+        }
+    }
+
+    public interface OnMensaLoadedListener {
+
+        void onMensaLoaded(@NonNull String key);
+    }
+
+    private static class Entry {
+
+        private boolean read;
+        private MensaCache.Entry cached;
+        private long checked;
+        private boolean revalidating;
+    }
+}
@@ -31,19 +31,47 @@ import android.text.TextUtils;
 import org.jsoup.Connection;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.select.Collector;
 import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
 
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import static org.voidsink.anewjkuapp.utils.Consts.MENSA_MENU_JKU;
 
 public abstract class MensenMenuLoader extends BaseMenuLoader implements MenuLoader {
 
+    private static final String CACHE_KEY = "MENSEN";
+
     private static final String PATTERN_BETRAG = "\\d+,\\d{2}";
     protected static final Pattern betragPattern = Pattern.compile(PATTERN_BETRAG);
 
+    private static final Evaluator DAYS = QueryParser.parse("div.menu-nav div.weekdays.desktop li.nav-item");
+    private static final Evaluator DATE = new Evaluator.Class("date");
+    private static final Evaluator MENU_ITEMS = QueryParser.parse("div.menu-plan div.menu-item");
+    private static final Evaluator TITLE = new Evaluator.Tag("h2");
+    protected static final Evaluator PARAGRAPHS = new Evaluator.Tag("p");
+
+    private static final String ATTR_DATA_INDEX = "data-index";
+    private static final String CLASS_MENU_ITEM_PREFIX = "menu-item-";
+
+    /**
+     * Classic, Choice and Tagesteller are all read from the same page, share its cache
+     */
+    @Override
+    protected final String getCacheKey() {
+        return CACHE_KEY;
+    }
+
     @Override
     protected String getUrl() {
         return MENSA_MENU_JKU;
@@ -64,26 +92,20 @@ public abstract class MensenMenuLoader extends BaseMenuLoader implements MenuLoa
         try {
             Document doc = getData(context);
             if (doc != null) {
-                Elements days = doc.select("div.menu-nav div.weekdays.desktop li.nav-item");
-
-                if (days.size() > 0) {
-                    for (Element dayElement : days) {
-                        String dataIndex = dayElement.attributes().get("data-index");
-                        Elements dateElements = dayElement.getElementsByClass("date");
-                        if (dateElements.size() == 1 && !TextUtils.isEmpty(dataIndex)) {
-                            Date date = parseDate(dateElements.get(0).text());
-                            if (date != null) {
-                                MensaDay day = new MensaDay(date);
-
-                                mensa.addDay(day);
-
-                                Elements categories = doc.select("div.menu-plan div.menu-item.menu-item-" + dataIndex);
-                                if (categories.size() > 0) {
-                                    addCategories(context, day, categories);
-                                }
-                            }
+                for (MenuPlanDay planDay : getMenuPlan(doc).days) {
+                    MensaDay day = new MensaDay(planDay.date);
+
+                    mensa.addDay(day);
+
+                    List<Category> categories = new ArrayList<>();
+                    for (Category category : planDay.categories) {
+                        if (isMatchingCategoryTitle(category.getTitle())) {
+                            categories.add(category);
                         }
                     }
+                    if (categories.size() > 0) {
+                        addCategories(context, day, categories);
+                    }
                 }
             }
         } catch (Exception e) {
@@ -94,11 +116,108 @@ public abstract class MensenMenuLoader extends BaseMenuLoader implements MenuLoa
         return mensa;
     }
 
-    protected abstract void addCategories(Context c, MensaDay day, Elements categories);
+    /**
+     * Classic, Choice and Tagesteller share the menu plan of a cached page, it's extracted only once
+     */
+    private MenuPlan getMenuPlan(Document doc) throws ParseException {
+        synchronized (DocumentCache.getLock(CACHE_KEY)) {
+            MenuPlan plan = (MenuPlan) DocumentCache.getExtract(CACHE_KEY, doc);
+            if (plan == null) {
+                plan = extractMenuPlan(doc);
+                DocumentCache.putExtract(CACHE_KEY, doc, plan);
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * collects days of the week and all menu items in one pass over the menu plan, items are
+     * bucketed by the day index of their menu-item-&lt;index&gt; class
+     */
+    private MenuPlan extractMenuPlan(Document doc) throws ParseException {
+        Map<String, List<Category>> categoriesByIndex = new HashMap<>();
+        for (Element item : Collector.collect(MENU_ITEMS, doc)) {
+            for (String className : item.classNames()) {
+                if (className.startsWith(CLASS_MENU_ITEM_PREFIX)) {
+                    String categoryTitle = text(Collector.collect(TITLE, item), " ");
+                    if (!TextUtils.isEmpty(categoryTitle)) {
+                        String dataIndex = className.substring(CLASS_MENU_ITEM_PREFIX.length());
+                        List<Category> categories = categoriesByIndex.get(dataIndex);
+                        if (categories == null) {
+                            categories = new ArrayList<>();
+                            categoriesByIndex.put(dataIndex, categories);
+                        }
+                        categories.add(new Category(categoryTitle, item));
+                    }
+                }
+            }
+        }
+
+        List<MenuPlanDay> days = new ArrayList<>();
+        for (Element dayElement : Collector.collect(DAYS, doc)) {
+            String dataIndex = dayElement.attributes().get(ATTR_DATA_INDEX);
+            Elements dateElements = Collector.collect(DATE, dayElement);
+            if (dateElements.size() == 1 && !TextUtils.isEmpty(dataIndex)) {
+                Date date = parseDate(dateElements.get(0).text());
+                if (date != null) {
+                    List<Category> categories = categoriesByIndex.get(dataIndex);
+                    days.add(new MenuPlanDay(date, categories != null ? categories : Collections.<Category>emptyList()));
+                }
+            }
+        }
+        return new MenuPlan(days);
+    }
+
+    /**
+     * @param categories menu items of day with a title matching {@link #isMatchingCategoryTitle(String)}
+     */
+    protected abstract void addCategories(Context c, MensaDay day, List<Category> categories);
 
     protected abstract boolean isMatchingCategoryTitle(String categoryTitle);
 
     protected abstract String getMensaKey();
 
     protected abstract String getLocation(Context c);
+
+    /**
+     * menu item of the menu plan with its h2 title
+     */
+    protected static final class Category {
+
+        private final String title;
+        private final Element element;
+
+        private Category(String title, Element element) {
+            this.title = title;
+            this.element = element;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public Element getElement() {
+            return element;
+        }
+    }
+
+    private static final class MenuPlanDay {
+
+        private final Date date;
+        private final List<Category> categories;
+
+        private MenuPlanDay(Date date, List<Category> categories) {
+            this.date = date;
+            this.categories = categories;
+        }
+    }
+
+    private static final class MenuPlan {
+
+        private final List<MenuPlanDay> days;
+
+        private MenuPlan(List<MenuPlanDay> days) {
+            this.days = days;
+        }
+    }
 }
@@ -28,26 +28,26 @@ package org.voidsink.anewjkuapp.mensa;
 import android.content.Context;
 import android.text.TextUtils;
 
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.jsoup.select.Collector;
 import org.voidsink.anewjkuapp.R;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
 public class TagestellerMenuLoader extends MensenMenuLoader {
 
     @Override
-    protected void addCategories(Context c, MensaDay day, Elements categories) {
+    protected void addCategories(Context c, MensaDay day, List<Category> categories) {
         Set<String> titles = new HashSet<>();
-        for (Element category : categories) {
+        for (Category category : categories) {
             // filter classic menu 1 and classic menu 2
             try {
-                String categoryTitle = text(category.getElementsByTag("h2"), " ");
-                if (!TextUtils.isEmpty(categoryTitle) && isMatchingCategoryTitle(categoryTitle) && !titles.contains(categoryTitle)) {
-                    String meal = text(category.getElementsByTag("p"));
+                String categoryTitle = category.getTitle();
+                if (!titles.contains(categoryTitle)) {
+                    String meal = text(Collector.collect(PARAGRAPHS, category.getElement()));
                     if (!TextUtils.isEmpty(meal)) {
                         MensaMenu menu = new MensaMenu(null, null, meal.trim(), 0, 0, 0);
                         day.addMenu(menu);
@@ -56,7 +56,7 @@ public class TagestellerMenuLoader extends MensenMenuLoader {
                     }
                 }
             } catch (Exception e) {
-                AnalyticsHelper.sendException(c, e, false, category.text());
+                AnalyticsHelper.sendException(c, e, false, category.getElement().text());
             }
         }
 
@@ -67,11 +67,6 @@ public class TagestellerMenuLoader extends MensenMenuLoader {
         return categoryTitle.toUpperCase(Locale.getDefault()).contains("TAGESTELLER");
     }
 
-    @Override
-    protected String getCacheKey() {
-        return Mensen.MENSA_TAGESTELLER;
-    }
-
     @Override
     protected String getMensaKey() {
         return Mensen.MENSA_TAGESTELLER;
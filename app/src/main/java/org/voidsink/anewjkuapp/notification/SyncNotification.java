@@ -94,6 +94,15 @@ public class SyncNotification {
         }
     }
 
+    public void updateProgress(int progress, int max) {
+        if (this.mBuilder != null) {
+            this.mBuilder.setProgress(max, progress, false);
+            ((NotificationManager) mContext
+                    .getSystemService(Context.NOTIFICATION_SERVICE)).notify(id,
+                    mBuilder.build());
+        }
+    }
+
     public void cancel() {
         if (this.mBuilder != null) {
             this.mBuilder.setProgress(100, 100, false);
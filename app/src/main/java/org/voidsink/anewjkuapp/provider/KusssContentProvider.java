@@ -27,13 +27,18 @@ package org.voidsink.anewjkuapp.provider;
 
 import android.accounts.Account;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.text.TextUtils;
 
@@ -56,8 +61,10 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class KusssContentProvider extends ContentProvider {
 
@@ -106,6 +113,127 @@ public class KusssContentProvider extends ContentProvider {
         return additionalDataList.toArray(new String[]{});
     }
 
+    /**
+     * applies all operations in one transaction instead of one per operation, readers continue to
+     * see the last committed state until the transaction ends
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
+        SQLiteDatabase db = KusssDatabaseHelper.getInstance(getContext()).getWritableDatabase();
+
+        db.beginTransactionNonExclusive();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            return results;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * inserts all rows in one transaction with compiled statements, with
+     * {@link KusssContentContract#asUpsert(Uri)} existing rows with the same natural key are updated
+     * instead
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        final String table;
+        final String[] naturalKey;
+        switch (sUriMatcher.match(uri)) {
+            case CODE_COURSE:
+                table = KusssContentContract.Course.TABLE_NAME;
+                naturalKey = KusssContentContract.Course.NATURAL_KEY;
+                break;
+            case CODE_EXAM:
+                table = KusssContentContract.Exam.TABLE_NAME;
+                naturalKey = KusssContentContract.Exam.NATURAL_KEY;
+                break;
+            case CODE_GRADE:
+                table = KusssContentContract.Assessment.TABLE_NAME;
+                naturalKey = KusssContentContract.Assessment.NATURAL_KEY;
+                break;
+            case CODE_CURRICULA:
+                table = KusssContentContract.Curricula.TABLE_NAME;
+                naturalKey = KusssContentContract.Curricula.NATURAL_KEY;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported URI: " + uri);
+        }
+        final boolean upsert = uri.getBooleanQueryParameter(KusssContentContract.PARAM_UPSERT, false);
+
+        SQLiteDatabase db = KusssDatabaseHelper.getInstance(getContext()).getWritableDatabase();
+        // statements by sql, rows of one import have the same columns
+        Map<String, SQLiteStatement> statements = new HashMap<>();
+        int count = 0;
+
+        db.beginTransactionNonExclusive();
+        try {
+            for (ContentValues row : values) {
+                String[] columns = row.keySet().toArray(new String[0]);
+
+                if (upsert) {
+                    SQLiteStatement update = getStatement(db, statements, getUpdateSql(table, columns, naturalKey));
+                    int index = bindValues(update, row, columns, 1);
+                    for (String key : naturalKey) {
+                        DatabaseUtils.bindObjectToProgram(update, index++, row.get(key));
+                    }
+                    if (update.executeUpdateDelete() > 0) {
+                        count++;
+                        continue;
+                    }
+                }
+
+                SQLiteStatement insert = getStatement(db, statements, getInsertSql(table, columns));
+                bindValues(insert, row, columns, 1);
+                if (insert.executeInsert() != -1) {
+                    count++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            AnalyticsHelper.sendException(getContext(), e, true, uri.toString());
+            throw e;
+        } finally {
+            db.endTransaction();
+            for (SQLiteStatement statement : statements.values()) {
+                statement.close();
+            }
+        }
+
+        if (count > 0) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+        return count;
+    }
+
+    private static SQLiteStatement getStatement(SQLiteDatabase db, Map<String, SQLiteStatement> statements, String sql) {
+        SQLiteStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = db.compileStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    private static int bindValues(SQLiteStatement statement, ContentValues row, String[] columns, int index) {
+        for (String column : columns) {
+            DatabaseUtils.bindObjectToProgram(statement, index++, row.get(column));
+        }
+        return index;
+    }
+
+    private static String getInsertSql(String table, String[] columns) {
+        return "INSERT INTO " + table + " (" + TextUtils.join(", ", columns) + ") VALUES ("
+                + TextUtils.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+    }
+
+    private static String getUpdateSql(String table, String[] columns, String[] naturalKey) {
+        return "UPDATE " + table + " SET " + TextUtils.join(" = ?, ", columns) + " = ? WHERE "
+                + TextUtils.join(" = ? AND ", naturalKey) + " = ?";
+    }
+
     @Override
     public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
         SQLiteDatabase db = KusssDatabaseHelper.getInstance(getContext()).getWritableDatabase();
@@ -26,11 +26,16 @@
 package org.voidsink.anewjkuapp.provider;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import android.text.format.DateUtils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.voidsink.anewjkuapp.BuildConfig;
+import org.voidsink.anewjkuapp.CourseMap;
 import org.voidsink.anewjkuapp.KusssContentContract;
 import org.voidsink.anewjkuapp.PoiContentContract;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
@@ -40,9 +45,14 @@ public class KusssDatabaseHelper extends SQLiteOpenHelper {
     private static final Logger logger = LoggerFactory.getLogger(KusssDatabaseHelper.class);
 
     private static final String DATABASE_NAME = "kusss.db";
-    private static final int DATABASE_VERSION = 12;
+    private static final int DATABASE_VERSION = 13;
     private volatile static KusssDatabaseHelper instance = null;
 
+    // page cache of the writing connection in KiB
+    private static final int CACHE_SIZE = 4 * 1024;
+    // close pooled reader connections after this time
+    private static final long IDLE_CONNECTION_TIMEOUT = 30 * DateUtils.SECOND_IN_MILLIS;
+
     // Database creation sql statement
     private static final String DB_CREATE_COURSE = "create table if not exists "
             + KusssContentContract.Course.TABLE_NAME + "("
@@ -115,8 +125,64 @@ public class KusssDatabaseHelper extends SQLiteOpenHelper {
             + KusssContentContract.Curricula.COL_DT_START + " integer not null, "
             + KusssContentContract.Curricula.COL_DT_END + " integer" + ")";
 
+    // indexes for sort orders of list screens and CourseMap, and lookups by term and course id
+    private static final String[] DB_CREATE_INDEXES = new String[]{
+            "create index if not exists idx_lva_term on "
+                    + KusssContentContract.Course.TABLE_NAME + "("
+                    + KusssContentContract.Course.COL_TERM + ", "
+                    + KusssContentContract.Course.COL_COURSEID + ")",
+            "create index if not exists idx_exam_dtstart on "
+                    + KusssContentContract.Exam.TABLE_NAME + "("
+                    + KusssContentContract.Exam.COL_DTSTART + ")",
+            "create index if not exists idx_exam_term on "
+                    + KusssContentContract.Exam.TABLE_NAME + "("
+                    + KusssContentContract.Exam.COL_TERM + ", "
+                    + KusssContentContract.Exam.COL_COURSEID + ")",
+            "create index if not exists idx_grade_type_date on "
+                    + KusssContentContract.Assessment.TABLE_NAME + "("
+                    + KusssContentContract.Assessment.COL_TYPE + " asc, "
+                    + KusssContentContract.Assessment.COL_DATE + " desc)",
+            "create index if not exists idx_grade_term on "
+                    + KusssContentContract.Assessment.TABLE_NAME + "("
+                    + KusssContentContract.Assessment.COL_TERM + ", "
+                    + KusssContentContract.Assessment.COL_COURSEID + ")",
+            "create index if not exists idx_studies_dtstart on "
+                    + KusssContentContract.Curricula.TABLE_NAME + "("
+                    + KusssContentContract.Curricula.COL_DT_START + ")"};
+
+    // queries of KusssContentProvider clients that should not need a full scan or temporary sort
+    private static final String[] DB_CHECK_QUERIES = new String[]{
+            "select * from " + KusssContentContract.Course.TABLE_NAME
+                    + " order by " + KusssContentContract.Course.COL_TERM + " desc",
+            "select * from " + KusssContentContract.Course.TABLE_NAME
+                    + " where " + KusssContentContract.Course.COL_TERM + " = '2020W'",
+            "select * from " + KusssContentContract.Exam.TABLE_NAME
+                    + " order by " + KusssContentContract.Exam.COL_DTSTART + " asc",
+            "select * from " + KusssContentContract.Exam.TABLE_NAME
+                    + " where " + KusssContentContract.Exam.COL_COURSEID + " = '123456' and " + KusssContentContract.Exam.COL_TERM + " = '2020W'",
+            "select * from " + KusssContentContract.Assessment.TABLE_NAME
+                    + " order by " + KusssContentContract.Assessment.COL_TYPE + " asc, " + KusssContentContract.Assessment.COL_DATE + " desc",
+            "select * from " + KusssContentContract.Curricula.TABLE_NAME
+                    + " order by " + KusssContentContract.Curricula.COL_DT_START + " desc"};
+
     private KusssDatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+
+        // readers (CursorLoaders) use their own pooled connections and don't wait for imports
+        setWriteAheadLoggingEnabled(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            setIdleConnectionTimeout(IDLE_CONNECTION_TIMEOUT);
+        }
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+
+        // with WAL a sync is only needed at checkpoints, a crash can only lose the last transactions
+        db.execSQL("PRAGMA synchronous = NORMAL");
+        db.execSQL("PRAGMA cache_size = -" + CACHE_SIZE);
+        db.execSQL("PRAGMA temp_store = MEMORY");
     }
 
     @Override
@@ -126,11 +192,46 @@ public class KusssDatabaseHelper extends SQLiteOpenHelper {
         db.execSQL(DB_CREATE_EXAM);
         db.execSQL(DB_CREATE_ASSESSMENT);
         db.execSQL(DB_CREATE_CURRICULUM);
+        createIndexes(db);
 
         db.execSQL("DROP TABLE IF EXISTS " + PoiContentContract.Poi.TABLE_NAME);
         db.execSQL(DB_CREATE_POI);
     }
 
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+
+        if (BuildConfig.DEBUG) {
+            checkQueryPlans(db);
+        }
+    }
+
+    private static void createIndexes(SQLiteDatabase db) {
+        for (String sql : DB_CREATE_INDEXES) {
+            db.execSQL(sql);
+        }
+    }
+
+    /**
+     * logs a warning for every query that scans a table or sorts without index, debug builds only
+     */
+    private static void checkQueryPlans(SQLiteDatabase db) {
+        for (String sql : DB_CHECK_QUERIES) {
+            try (Cursor c = db.rawQuery("explain query plan " + sql, null)) {
+                int detailIndex = c.getColumnIndex("detail");
+                while (c.moveToNext()) {
+                    String detail = c.getString(detailIndex);
+                    if ((detail.startsWith("SCAN") && !detail.contains("USING")) || detail.contains("TEMP B-TREE")) {
+                        logger.warn("query plan without index: {} -> {}", sql, detail);
+                    }
+                }
+            } catch (Exception e) {
+                logger.warn("checkQueryPlans failed", e);
+            }
+        }
+    }
+
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         logger.warn("Upgrading database from version {} to {}, which will destroy most of all old data", oldVersion, newVersion);
@@ -155,6 +256,7 @@ public class KusssDatabaseHelper extends SQLiteOpenHelper {
             db.execSQL("DROP TABLE IF EXISTS "
                     + KusssContentContract.Assessment.TABLE_NAME);
         }
+        // indexes added with 13 are created by onCreate
         onCreate(db);
     }
 
@@ -176,9 +278,8 @@ public class KusssDatabaseHelper extends SQLiteOpenHelper {
 
     public static void dropUserData(Context context) {
         try {
-            KusssDatabaseHelper mDbHelper = new KusssDatabaseHelper(context);
-
-            SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            // use the shared instance, a second helper would open a second connection pool
+            SQLiteDatabase db = getInstance(context).getWritableDatabase();
 
             db.execSQL("DROP TABLE IF EXISTS "
                     + KusssContentContract.Assessment.TABLE_NAME);
@@ -195,6 +296,10 @@ public class KusssDatabaseHelper extends SQLiteOpenHelper {
             db.execSQL("DROP TABLE IF EXISTS "
                     + KusssContentContract.Curricula.TABLE_NAME);
             db.execSQL(DB_CREATE_CURRICULUM);
+
+            createIndexes(db);
+
+            CourseMap.invalidate();
         } catch (Exception e) {
             AnalyticsHelper.sendException(context, e, true);
             drop(context);
@@ -204,7 +309,7 @@ public class KusssDatabaseHelper extends SQLiteOpenHelper {
     public static synchronized KusssDatabaseHelper getInstance(Context context) {
         if (instance == null) {
             synchronized (KusssDatabaseHelper.class) {
-                if (instance == null) instance = new KusssDatabaseHelper(context);
+                if (instance == null) instance = new KusssDatabaseHelper(context.getApplicationContext());
             }
         }
         return instance;
@@ -81,6 +81,7 @@ import org.voidsink.anewjkuapp.kusss.AssessmentType;
 import org.voidsink.anewjkuapp.kusss.Course;
 import org.voidsink.anewjkuapp.kusss.Curriculum;
 import org.voidsink.anewjkuapp.kusss.Grade;
+import org.voidsink.anewjkuapp.kusss.KusssFingerprints;
 import org.voidsink.anewjkuapp.kusss.LvaState;
 import org.voidsink.anewjkuapp.kusss.LvaWithGrade;
 import org.voidsink.anewjkuapp.kusss.Term;
@@ -89,6 +90,7 @@ import org.voidsink.anewjkuapp.worker.ImportCalendarWorker;
 import org.voidsink.anewjkuapp.worker.ImportCourseWorker;
 import org.voidsink.anewjkuapp.worker.ImportCurriculaWorker;
 import org.voidsink.anewjkuapp.worker.ImportExamWorker;
+import org.voidsink.anewjkuapp.worker.ImportKusssWorker;
 import org.voidsink.anewjkuapp.worker.ImportPoiWorker;
 
 import java.io.BufferedInputStream;
@@ -190,11 +192,13 @@ public class AppUtils {
     }
 
     private static boolean deleteKusssEvents(Context context) {
+        KusssFingerprints.clear(context);
         Account account = AppUtils.getAccount(context);
         return (account == null || CalendarUtils.deleteKusssEvents(context, account));
     }
 
     private static boolean removeCalendars(Context context) {
+        KusssFingerprints.clear(context);
         return CalendarUtils.removeCalendar(context, CalendarUtils.ARG_CALENDAR_EXAM) &&
                 CalendarUtils.removeCalendar(context, CalendarUtils.ARG_CALENDAR_COURSE);
     }
@@ -717,9 +721,11 @@ public class AppUtils {
         } else if (Consts.ARG_WORKER_KUSSS_ASSESSMENTS.equals(tag)) {
             return ImportAssessmentWorker.class;
         } else if (Consts.ARG_WORKER_KUSSS_COURSES.equals(tag)) {
-            return ImportAssessmentWorker.class;
+            return ImportCourseWorker.class;
         } else if (Consts.ARG_WORKER_KUSSS_EXAMS.equals(tag)) {
-            return ImportAssessmentWorker.class;
+            return ImportExamWorker.class;
+        } else if (Consts.ARG_WORKER_KUSSS_PIPELINE.equals(tag)) {
+            return ImportKusssWorker.class;
         } else if (Consts.ARG_WORKER_POI.equals(tag)) {
             return ImportPoiWorker.class;
         } else {
@@ -755,22 +761,46 @@ public class AppUtils {
         return request;
     }
 
+    public static boolean isCalendarSyncEnabled(Context context) {
+        boolean mIsCalendarSyncEnabled = false;
+        boolean mIsMasterSyncEnabled = ContentResolver.getMasterSyncAutomatically();
+
+        if (mIsMasterSyncEnabled) {
+            final Account mAccount = getAccount(context);
+            if (mAccount != null) {
+                mIsCalendarSyncEnabled = ContentResolver.getSyncAutomatically(mAccount, CalendarContract.AUTHORITY);
+            }
+        }
+
+        logger.debug("MasterSync={}, CalendarSync={}", mIsMasterSyncEnabled, mIsCalendarSyncEnabled);
+
+        return mIsCalendarSyncEnabled;
+    }
+
     public static void enableSync(Context context, boolean reCreateAlarms) {
         try {
             if (context != null) {
-                boolean mIsCalendarSyncEnabled = false;
-                boolean mIsMasterSyncEnabled = ContentResolver.getMasterSyncAutomatically();
+                boolean mIsCalendarSyncEnabled = isCalendarSyncEnabled(context);
+
+                WorkManager workManager = WorkManager.getInstance(context);
+                if (PreferenceHelper.getSyncPipelined(context)) {
+                    // one worker walks all terms and starts the import workers
+                    workManager.cancelAllWorkByTag(ARG_WORKER_CAL_HELPER);
+                    workManager.cancelUniqueWork(Consts.ARG_WORKER_KUSSS_CURRICULA);
+                    workManager.cancelUniqueWork(Consts.ARG_WORKER_KUSSS_COURSES);
+                    workManager.cancelUniqueWork(Consts.ARG_WORKER_KUSSS_ASSESSMENTS);
+                    workManager.cancelUniqueWork(Consts.ARG_WORKER_KUSSS_EXAMS);
+
+                    if (reCreateAlarms || !isWorkScheduled(context, Consts.ARG_WORKER_KUSSS_PIPELINE)) {
+                        workManager.cancelAllWorkByTag(Consts.ARG_WORKER_KUSSS_PIPELINE);
 
-                if (mIsMasterSyncEnabled) {
-                    final Account mAccount = getAccount(context);
-                    if (mAccount != null) {
-                        mIsCalendarSyncEnabled = ContentResolver.getSyncAutomatically(mAccount, CalendarContract.AUTHORITY);
+                        PeriodicWorkRequest.Builder pipelineRequest = setupPeriodicWorkRequest(context, ImportKusssWorker.class, Consts.ARG_WORKER_KUSSS_PIPELINE);
+                        workManager.enqueueUniquePeriodicWork(Consts.ARG_WORKER_KUSSS_PIPELINE, ExistingPeriodicWorkPolicy.REPLACE, pipelineRequest.build());
                     }
+                    return;
                 }
+                workManager.cancelAllWorkByTag(Consts.ARG_WORKER_KUSSS_PIPELINE);
 
-                logger.debug("MasterSync={}, CalendarSync={}", mIsMasterSyncEnabled, mIsCalendarSyncEnabled);
-
-                WorkManager workManager = WorkManager.getInstance(context);
                 if (mIsCalendarSyncEnabled) {
                     if (reCreateAlarms || !isWorkScheduled(context, ARG_WORKER_CAL_HELPER)) {
                         workManager.cancelAllWorkByTag(ARG_WORKER_CAL_HELPER);
@@ -815,6 +845,42 @@ public class AppUtils {
         }
     }
 
+    /**
+     * starts the import workers after a term walk of {@link ImportKusssWorker}, exams are imported
+     * after courses because they are searched by the stored courses
+     *
+     * @param context       context
+     * @param syncCalendars import calendars too
+     */
+    public static void enqueueKusssImport(Context context, boolean syncCalendars) {
+        WorkManager workManager = WorkManager.getInstance(context);
+
+        workManager.beginUniqueWork(Consts.ARG_WORKER_KUSSS_PIPELINE + ":" + Consts.ARG_WORKER_KUSSS_COURSES, ExistingWorkPolicy.REPLACE,
+                setupPipelineWorkRequest(Consts.ARG_WORKER_KUSSS_COURSES))
+                .then(setupPipelineWorkRequest(Consts.ARG_WORKER_KUSSS_EXAMS))
+                .enqueue();
+
+        List<String> tags = new ArrayList<>();
+        tags.add(Consts.ARG_WORKER_KUSSS_ASSESSMENTS);
+        tags.add(Consts.ARG_WORKER_KUSSS_CURRICULA);
+        if (syncCalendars) {
+            tags.add(Consts.ARG_WORKER_CAL_COURSES);
+            tags.add(Consts.ARG_WORKER_CAL_EXAM);
+        }
+        for (String tag : tags) {
+            workManager.enqueueUniqueWork(Consts.ARG_WORKER_KUSSS_PIPELINE + ":" + tag, ExistingWorkPolicy.REPLACE, setupPipelineWorkRequest(tag));
+        }
+    }
+
+    private static OneTimeWorkRequest setupPipelineWorkRequest(String tag) {
+        OneTimeWorkRequest.Builder request = setupOneTimeWorkRequest(true, true, tag);
+        if (request == null) {
+            throw new IllegalArgumentException(String.format("no worker for tag %s", tag));
+        }
+        request.setInputData(new Data.Builder().putBoolean(Consts.SYNC_SHOW_PROGRESS, false).putBoolean(ContentResolver.SYNC_EXTRAS_DO_NOT_RETRY, true).build());
+        return request.build();
+    }
+
     public static void triggerSync(Context context, boolean immediately, String... tags) {
         triggerSync(context, immediately, true, tags);
     }
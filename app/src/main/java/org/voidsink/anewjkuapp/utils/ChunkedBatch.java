@@ -0,0 +1,134 @@
+/*
+ *       ____.____  __.____ ___     _____
+ *      |    |    |/ _|    |   \   /  _  \ ______ ______
+ *      |    |      < |    |   /  /  /_\  \\____ \\____ \
+ *  /\__|    |    |  \|    |  /  /    |    \  |_> >  |_> >
+ *  \________|____|__ \______/   \____|__  /   __/|   __/
+ *                   \/                  \/|__|   |__|
+ *
+ *  Copyright (c) 2014-2020 Paul "Marunjar" Pretsch
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.voidsink.anewjkuapp.utils;
+
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.OperationApplicationException;
+import android.os.RemoteException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects content provider operations in chunks of bounded size, each chunk is applied with its own
+ * applyBatch call. This keeps write transactions short and every transaction well below the binder
+ * transaction size limit.
+ * <p>
+ * Operations with a back reference have to be added with {@link #addDependent(ContentProviderOperation)}
+ * after the referenced operation, they are never moved to another chunk. Back reference indexes are
+ * relative to the chunk and returned by {@link #add(ContentProviderOperation)}.
+ */
+public class ChunkedBatch {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedBatch.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 250;
+
+    public interface ProgressListener {
+        /**
+         * called after each chunk
+         *
+         * @param applied number of applied operations
+         * @param total   number of all operations
+         * @return false to stop applying remaining chunks
+         */
+        boolean onProgress(int applied, int total);
+    }
+
+    private final int mChunkSize;
+    private final List<ArrayList<ContentProviderOperation>> mChunks = new ArrayList<>();
+    private int mSize = 0;
+
+    public ChunkedBatch() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedBatch(int chunkSize) {
+        this.mChunkSize = chunkSize;
+    }
+
+    /**
+     * adds an operation, starts a new chunk if the current one is full
+     *
+     * @param operation independent operation
+     * @return index of operation for back references of following dependent operations
+     */
+    public int add(ContentProviderOperation operation) {
+        ArrayList<ContentProviderOperation> chunk = mChunks.isEmpty() ? null : mChunks.get(mChunks.size() - 1);
+        if (chunk == null || chunk.size() >= mChunkSize) {
+            chunk = new ArrayList<>(mChunkSize);
+            mChunks.add(chunk);
+        }
+        chunk.add(operation);
+        mSize++;
+        return chunk.size() - 1;
+    }
+
+    /**
+     * adds an operation to the chunk of the previous operation
+     *
+     * @param operation operation with back reference to an index returned by {@link #add(ContentProviderOperation)}
+     */
+    public void addDependent(ContentProviderOperation operation) {
+        if (mChunks.isEmpty()) {
+            throw new IllegalStateException("no operation to depend on");
+        }
+        mChunks.get(mChunks.size() - 1).add(operation);
+        mSize++;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * applies all chunks one after another
+     *
+     * @param provider provider to apply operations
+     * @param listener optional progress listener
+     * @return true if all chunks were applied, false if stopped by listener
+     * @throws RemoteException              of provider.applyBatch()
+     * @throws OperationApplicationException of provider.applyBatch()
+     */
+    public boolean apply(ContentProviderClient provider, ProgressListener listener) throws RemoteException, OperationApplicationException {
+        int applied = 0;
+        for (ArrayList<ContentProviderOperation> chunk : mChunks) {
+            provider.applyBatch(chunk);
+            applied += chunk.size();
+
+            logger.debug("applied {}/{} operations", applied, mSize);
+
+            if (listener != null && !listener.onProgress(applied, mSize)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
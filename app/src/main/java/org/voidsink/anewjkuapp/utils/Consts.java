@@ -35,6 +35,7 @@ public interface Consts {
     String ARG_WORKER_KUSSS_COURSES = "UPDATE_KUSSS_COURSES";
     String ARG_WORKER_KUSSS_ASSESSMENTS = "UPDATE_KUSSS_ASSESSMENTS";
     String ARG_WORKER_KUSSS_EXAMS = "UPDATE_KUSSS_EXAMS";
+    String ARG_WORKER_KUSSS_PIPELINE = "UPDATE_KUSSS_PIPELINE";
     String ARG_WORKER_POI = "UPDATE_POI";
 
     String ARG_TERMS = "TERMS";
@@ -29,6 +29,7 @@ import android.accounts.Account;
 import android.content.ContentProviderClient;
 import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
+import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
@@ -50,6 +51,7 @@ import org.voidsink.anewjkuapp.kusss.KusssHandler;
 import org.voidsink.anewjkuapp.kusss.KusssHelper;
 import org.voidsink.anewjkuapp.notification.AssessmentChangedNotification;
 import org.voidsink.anewjkuapp.utils.AppUtils;
+import org.voidsink.anewjkuapp.utils.ChunkedBatch;
 
 import java.util.ArrayList;
 import java.util.Date;
@@ -97,18 +99,17 @@ public class ImportAssessmentWorker extends BaseWorker {
         try {
             logger.debug("setup connection");
 
-            if (KusssHandler.getInstance().isAvailable(getApplicationContext(),
-                    AppUtils.getAccountAuthToken(getApplicationContext(), mAccount),
-                    AppUtils.getAccountName(mAccount),
-                    AppUtils.getAccountPassword(getApplicationContext(), mAccount))) {
+            if (acquireKusssSession(mAccount)) {
 
                 updateNotification(getApplicationContext().getString(R.string.notification_sync_assessment_loading));
                 logger.debug("load assessments");
 
                 List<Assessment> assessments = KusssHandler.getInstance()
-                        .getAssessments(getApplicationContext());
+                        .getAssessments(getApplicationContext(), true);
                 if (assessments == null) {
                     return getRetry();
+                } else if (KusssHandler.getInstance().isUnchanged(getApplicationContext(), KusssHandler.ENDPOINT_ASSESSMENTS)) {
+                    logger.debug("assessments unchanged, skip merge");
                 } else {
                     Map<String, Assessment> assessmentMap = new HashMap<>();
                     ArrayList<Assessment> possibleDuplicates = new ArrayList<>();
@@ -125,13 +126,16 @@ public class ImportAssessmentWorker extends BaseWorker {
 
                     updateNotification(getApplicationContext().getString(R.string.notification_sync_assessment_updating));
 
-                    ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+                    ChunkedBatch batch = new ChunkedBatch();
+                    List<ContentValues> upserts = new ArrayList<>();
+                    List<ContentValues> inserts = new ArrayList<>();
 
                     Uri examUri = KusssContentContract.Assessment.CONTENT_URI;
                     try (Cursor c = mProvider.query(examUri, KusssContentContract.Assessment.DB.getProjection(), null,
                             null, null)) {
                         if (c == null) {
                             logger.warn("selection failed");
+                            return getRetry();
                         } else {
                             logger.debug("Found {} local entries. Computing merge solution...", c.getCount());
 
@@ -172,11 +176,8 @@ public class ImportAssessmentWorker extends BaseWorker {
                                 } else {
                                     Assessment assessment = assessmentMap.remove(KusssHelper.getAssessmentKey(assessmentCode, assessmentCourseId, assessmentDate.getTime()));
                                     if (assessment != null) {
-                                        // Check to see if the entry needs to be updated
-                                        Uri existingUri = examUri.buildUpon()
-                                                .appendPath(Integer.toString(_Id))
-                                                .build();
-                                        logger.debug("Scheduling update: {}", existingUri);
+                                        // update by natural key
+                                        logger.debug("Scheduling update: {}", _Id);
 
                                         if (!assessmentType.equals(assessment.getAssessmentType())
                                                 || !assessmentGrade.equals(assessment.getGrade())) {
@@ -188,32 +189,13 @@ public class ImportAssessmentWorker extends BaseWorker {
                                                                     .getStringResID())));
                                         }
 
-                                        batch.add(ContentProviderOperation
-                                                .newUpdate(
-                                                        KusssContentContract
-                                                                .asEventSyncAdapter(
-                                                                        existingUri,
-                                                                        mAccount.name,
-                                                                        mAccount.type))
-                                                .withValue(
-                                                        KusssContentContract.Assessment.COL_ID,
-                                                        Integer.toString(_Id))
-                                                .withValues(KusssHelper.getAssessmentContentValues(assessment))
-                                                .build());
+                                        upserts.add(KusssHelper.getAssessmentContentValues(assessment));
                                     }
                                 }
                             }
 
                             for (Assessment assessment : assessmentMap.values()) {
-                                batch.add(ContentProviderOperation
-                                        .newInsert(
-                                                KusssContentContract
-                                                        .asEventSyncAdapter(
-                                                                examUri,
-                                                                mAccount.name,
-                                                                mAccount.type))
-                                        .withValues(KusssHelper.getAssessmentContentValues(assessment))
-                                        .build());
+                                upserts.add(KusssHelper.getAssessmentContentValues(assessment));
                                 logger.debug("Scheduling insert: {} {}", assessment.getTerm(), assessment.getCourseId());
 
                                 mChangedNotification.addInsert(String.format(
@@ -222,23 +204,19 @@ public class ImportAssessmentWorker extends BaseWorker {
                                                         .getStringResID())));
                             }
                             for (Assessment assessment : possibleDuplicates) {
-                                batch.add(ContentProviderOperation
-                                        .newInsert(
-                                                KusssContentContract
-                                                        .asEventSyncAdapter(
-                                                                examUri,
-                                                                mAccount.name,
-                                                                mAccount.type))
-                                        .withValues(KusssHelper.getAssessmentContentValues(assessment))
-                                        .build());
+                                // duplicates share the natural key, always insert
+                                inserts.add(KusssHelper.getAssessmentContentValues(assessment));
                                 logger.debug("Scheduling insert: {} {}", assessment.getTerm(), assessment.getCourseId());
                             }
 
                             updateNotification(getApplicationContext().getString(R.string.notification_sync_assessment_saving));
 
-                            if (batch.size() > 0) {
+                            if (batch.size() > 0 || upserts.size() > 0 || inserts.size() > 0) {
                                 logger.debug("Applying batch update");
-                                mProvider.applyBatch(batch);
+                                applyBatch(mProvider, batch);
+                                Uri syncAdapterUri = KusssContentContract.asEventSyncAdapter(examUri, mAccount.name, mAccount.type);
+                                bulkInsert(mProvider, syncAdapterUri, upserts, true);
+                                bulkInsert(mProvider, syncAdapterUri, inserts, false);
                                 logger.debug("Notify resolver");
                                 mResolver
                                         .notifyChange(
@@ -254,11 +232,12 @@ public class ImportAssessmentWorker extends BaseWorker {
                         }
                     }
                 }
-                KusssHandler.getInstance().logout(getApplicationContext());
             } else {
                 return getRetry();
             }
 
+            KusssHandler.getInstance().commitFingerprint(getApplicationContext(), KusssHandler.ENDPOINT_ASSESSMENTS);
+
             mChangedNotification.show();
             return getSuccess();
         } catch (Exception e) {
@@ -271,6 +250,7 @@ public class ImportAssessmentWorker extends BaseWorker {
             } else {
                 mProvider.release();
             }
+            releaseKusssSession();
             cancelUpdateNotification();
         }
     }
@@ -46,12 +46,7 @@ import androidx.core.content.ContextCompat;
 import androidx.work.WorkerParameters;
 
 import net.fortuna.ical4j.data.CalendarBuilder;
-import net.fortuna.ical4j.model.Component;
 import net.fortuna.ical4j.model.TimeZone;
-import net.fortuna.ical4j.model.component.VEvent;
-import net.fortuna.ical4j.model.property.Description;
-import net.fortuna.ical4j.model.property.Location;
-import net.fortuna.ical4j.model.property.Summary;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,10 +57,12 @@ import org.voidsink.anewjkuapp.R;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
 import org.voidsink.anewjkuapp.base.BaseWorker;
 import org.voidsink.anewjkuapp.calendar.CalendarUtils;
+import org.voidsink.anewjkuapp.calendar.ICalEvent;
 import org.voidsink.anewjkuapp.kusss.KusssCalendar;
 import org.voidsink.anewjkuapp.kusss.KusssHandler;
 import org.voidsink.anewjkuapp.notification.CalendarChangedNotification;
 import org.voidsink.anewjkuapp.utils.AppUtils;
+import org.voidsink.anewjkuapp.utils.ChunkedBatch;
 import org.voidsink.anewjkuapp.utils.Consts;
 
 import java.text.DecimalFormat;
@@ -155,16 +152,13 @@ public class ImportCalendarWorker extends BaseWorker {
 
             updateNotification(getApplicationContext().getString(R.string.notification_sync_connect));
 
-            if (KusssHandler.getInstance().isAvailable(getApplicationContext(),
-                    AppUtils.getAccountAuthToken(getApplicationContext(), mAccount),
-                    AppUtils.getAccountName(mAccount),
-                    AppUtils.getAccountPassword(getApplicationContext(), mAccount))) {
+            if (acquireKusssSession(mAccount)) {
 
                 updateNotification(getApplicationContext().getString(R.string.notification_sync_calendar_loading, CalendarUtils.getCalendarName(getApplicationContext(), calendarName)));
 
                 logger.debug("loading calendar");
 
-                ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+                ChunkedBatch batch = new ChunkedBatch();
                 Uri calUri = CalendarContract.Events.CONTENT_URI;
 
                 String calendarId = CalendarUtils.getCalIDByName(getApplicationContext(), mAccount, calendarName, true);
@@ -176,14 +170,17 @@ public class ImportCalendarWorker extends BaseWorker {
 
                 List<KusssCalendar> calendars = KusssHandler.getInstance().getIcal(getApplicationContext(), mCalendarBuilder, calendarName, new Date(mSyncFromNow), false);
 
+                List<String> mergedEndpoints = new ArrayList<>();
                 for (KusssCalendar calendar : calendars) {
-                    if (calendar.getCalendar() == null) {
+                    if (calendar.isUnchanged()) {
+                        logger.debug("calendar unchanged, skip merge: {}", calendar.getName());
+                    } else if (calendar.getEvents() == null) {
                         if (calendar.isMandatory()) {
                             logger.warn("calendar not loaded: {}", calendar.getName());
                             return getRetry();
                         }
                     } else {
-                        List<?> events = calendar.getCalendar().getComponents(Component.VEVENT);
+                        List<ICalEvent> events = calendar.getEvents();
 
                         logger.debug("got {} events", events.size());
 
@@ -193,30 +190,19 @@ public class ImportCalendarWorker extends BaseWorker {
                         String lineSeparator = System.getProperty("line.separator");
                         if (lineSeparator == null) lineSeparator = ", ";
 
-                        for (Object e : events) {
-                            if (e instanceof VEvent) {
-                                VEvent ev = ((VEvent) e);
-
-                                enforceFieldsNotNull(ev);
-
-                                if (!splitSummaryV2(ev, lineSeparator)) {
-                                    splitSummaryV1(ev, lineSeparator);
-                                }
-                            }
-                        }
+                        final long termStart = calendar.getTerm().getStart().getTime();
+                        final long termEnd = calendar.getTerm().getEnd().getTime();
 
                         // Build hash table of incoming entries
-                        Map<String, VEvent> eventsMap = new HashMap<>();
-                        for (Object e : events) {
-                            if (e instanceof VEvent) {
-                                VEvent ev = ((VEvent) e);
-
-                                if ((ev.getStartDate().getDate().getTime() >= calendar.getTerm().getStart().getTime()) &&
-                                        (ev.getStartDate().getDate().getTime() <= calendar.getTerm().getEnd().getTime())) {
-                                    String uid = ev.getUid().getValue();
-                                    // compense DST
-                                    eventsMap.put(uid, ev);
+                        Map<String, ICalEvent> eventsMap = new HashMap<>();
+                        for (ICalEvent ev : events) {
+                            if (ev.startsBetween(termStart, termEnd)) {
+                                ICalEvent split = splitSummaryV2(ev, lineSeparator);
+                                if (split == null) {
+                                    split = splitSummaryV1(ev, lineSeparator);
                                 }
+                                // compense DST
+                                eventsMap.put(split.getUid(), split);
                             }
                         }
 
@@ -230,49 +216,33 @@ public class ImportCalendarWorker extends BaseWorker {
                             if (c == null) {
                                 logger.warn("selection failed");
                             } else {
+                                mergedEndpoints.add(calendar.getEndpoint());
+
                                 logger.debug("Found {} local entries. Computing merge solution...", c.getCount());
 
                                 // find stale data
                                 String eventId;
                                 String eventKusssId;
-                                String eventLocation;
                                 String eventTitle;
-                                String eventDescription;
                                 long eventDTStart;
                                 long eventDTEnd;
                                 boolean eventDirty;
                                 boolean eventDeleted;
 
+                                // get kusssIds and content hashes from extended properties
+                                List<String> eventIds = CalendarUtils.getEventIds(c);
+                                Map<String, String> kusssIds = CalendarUtils.getExtendedProperties(mProvider, eventIds, CalendarUtils.EXTENDED_PROPERTY_NAME_KUSSS_ID);
+                                Map<String, String> contentHashes = CalendarUtils.getExtendedProperties(mProvider, eventIds, CalendarUtils.EXTENDED_PROPERTY_NAME_KUSSS_HASH);
+
                                 while (c.moveToNext()) {
                                     eventId = c.getString(CalendarUtils.COLUMN_EVENT_ID);
 
-                                    eventKusssId = null;
-
-                                    // get kusssId from extended properties
-                                    try (Cursor c2 = mProvider.query(CalendarContract.ExtendedProperties.CONTENT_URI, CalendarUtils.getExtendedPropertiesProjection(),
-                                            CalendarContract.ExtendedProperties.EVENT_ID + " = ?",
-                                            new String[]{eventId},
-                                            null)) {
-                                        if (c2 != null) {
-                                            while (c2.moveToNext()) {
-                                                if (c2.getString(1).contains(CalendarUtils.EXTENDED_PROPERTY_NAME_KUSSS_ID)) {
-                                                    eventKusssId = c2.getString(2);
-                                                }
-                                            }
-                                        }
-                                    }
+                                    eventKusssId = kusssIds.get(eventId);
 
                                     if (TextUtils.isEmpty(eventKusssId)) {
                                         eventKusssId = c.getString(CalendarUtils.COLUMN_EVENT_KUSSS_ID_LEGACY);
                                     }
 
-                                    eventTitle = c.getString(CalendarUtils.COLUMN_EVENT_TITLE);
-                                    logger.debug("Title: {}", eventTitle);
-
-                                    eventLocation = c
-                                            .getString(CalendarUtils.COLUMN_EVENT_LOCATION);
-                                    eventDescription = c
-                                            .getString(CalendarUtils.COLUMN_EVENT_DESCRIPTION);
                                     eventDTStart = c.getLong(CalendarUtils.COLUMN_EVENT_DTSTART);
                                     eventDTEnd = c.getLong(CalendarUtils.COLUMN_EVENT_DTEND);
                                     eventDirty = "1".equals(c
@@ -281,21 +251,20 @@ public class ImportCalendarWorker extends BaseWorker {
                                             .getString(CalendarUtils.COLUMN_EVENT_DELETED));
 
                                     if (eventKusssId != null && eventKusssId.startsWith(calendar.getUidPrefix())) {
-                                        VEvent match = eventsMap.get(eventKusssId);
+                                        ICalEvent match = eventsMap.get(eventKusssId);
                                         if (match != null && !eventDeleted) {
                                             // Entry exists. Remove from entry
                                             // map to prevent insert later
                                             eventsMap.remove(eventKusssId);
 
+                                            final String contentHash = contentHashes.get(eventId);
+
                                             // update only changes after notifiyFrom
-                                            if ((match.getStartDate().getDate().getTime() > notifyFrom || eventDTStart > notifyFrom) &&
+                                            if ((match.getDtStart() > notifyFrom || eventDTStart > notifyFrom) &&
                                                     // check to see if the entry needs to be updated
-                                                    ((match.getStartDate().getDate().getTime() != eventDTStart) ||
-                                                            (match.getEndDate().getDate().getTime() != eventDTEnd) ||
-                                                            !match.getSummary().getValue().trim().equals(eventTitle.trim()) ||
-                                                            !match.getSummary().getValue().trim().equals(eventTitle.trim()) ||
-                                                            !match.getLocation().getValue().trim().equals(eventLocation.trim()) ||
-                                                            !match.getDescription().getValue().trim().equals(eventDescription.trim())
+                                                    ((match.getDtStart() != eventDTStart) ||
+                                                            (match.getDtEnd() != eventDTEnd) ||
+                                                            (match.getContentHash() != parseContentHash(contentHash) && !hasEqualContent(match, c))
                                                     )) {
                                                 Uri existingUri = calUri.buildUpon()
                                                         .appendPath(eventId).build();
@@ -310,10 +279,13 @@ public class ImportCalendarWorker extends BaseWorker {
 
                                                 mChangedNotification.addUpdate(getEventString(getApplicationContext(), match));
                                             }
+                                            if (match.getContentHash() != parseContentHash(contentHash)) {
+                                                batch.add(newContentHashOperation(mAccount, eventId, contentHash != null, match));
+                                            }
                                         } else {
                                             if ((eventDTStart >= mSyncFromNow) &&
-                                                    (eventDTStart >= calendar.getTerm().getStart().getTime()) &&
-                                                    (eventDTStart <= calendar.getTerm().getEnd().getTime())) {
+                                                    (eventDTStart >= termStart) &&
+                                                    (eventDTStart <= termEnd)) {
                                                 // Entry doesn't exist. Remove only newer events from the database.
                                                 Uri deleteUri = calUri.buildUpon()
                                                         .appendPath(eventId)
@@ -321,6 +293,7 @@ public class ImportCalendarWorker extends BaseWorker {
                                                 logger.debug("Scheduling delete: {}", deleteUri);
                                                 // notify only future changes
                                                 if (eventDTStart > notifyFrom && !eventDeleted) {
+                                                    eventTitle = c.getString(CalendarUtils.COLUMN_EVENT_TITLE);
                                                     mChangedNotification
                                                             .addDelete(AppUtils.getEventString(
                                                                     getApplicationContext(),
@@ -335,7 +308,8 @@ public class ImportCalendarWorker extends BaseWorker {
                                             }
                                         }
                                     } else {
-                                        logger.info("Event UID not set, ignore event: uid={} dirty={} title={}" + eventKusssId, eventDirty, eventTitle);
+                                        eventTitle = c.getString(CalendarUtils.COLUMN_EVENT_TITLE);
+                                        logger.info("Event UID not set, ignore event: uid={} dirty={} title={}", eventKusssId, eventDirty, eventTitle);
                                     }
                                 }
                             }
@@ -345,12 +319,10 @@ public class ImportCalendarWorker extends BaseWorker {
                             updateNotification(getApplicationContext().getString(R.string.notification_sync_calendar_adding, calendar.getName()));
 
                             // Add new items
-                            for (VEvent v : eventsMap.values()) {
-                                if ((v.getUid().getValue().startsWith(calendar.getUidPrefix()) &&
-                                        (v.getStartDate().getDate().getTime() >= calendar.getTerm().getStart().getTime()) &&
-                                        (v.getStartDate().getDate().getTime() <= calendar.getTerm().getEnd().getTime()))) {
+                            for (ICalEvent v : eventsMap.values()) {
+                                if (v.getUid().startsWith(calendar.getUidPrefix())) {
                                     // notify only future changes
-                                    if (v.getStartDate().getDate().getTime() > notifyFrom) {
+                                    if (v.getDtStart() > notifyFrom) {
                                         mChangedNotification.addInsert(getEventString(getApplicationContext(), v));
                                     }
 
@@ -387,13 +359,11 @@ public class ImportCalendarWorker extends BaseWorker {
                                     builder.withValue(CalendarContract.Events.HAS_EXTENDED_PROPERTIES, "1");
 
                                     ContentProviderOperation op = builder.build();
-                                    logger.debug("Scheduling insert: {}", v.getUid().getValue());
-                                    batch.add(op);
-
-                                    int eventIndex = batch.size() - 1;
+                                    logger.debug("Scheduling insert: {}", v.getUid());
+                                    int eventIndex = batch.add(op);
 
                                     // add kusssid as extendet property
-                                    batch.add(ContentProviderOperation
+                                    batch.addDependent(ContentProviderOperation
                                             .newInsert(
                                                     KusssContentContract
                                                             .asEventSyncAdapter(
@@ -402,9 +372,9 @@ public class ImportCalendarWorker extends BaseWorker {
                                                                     mAccount.type))
                                             .withValueBackReference(CalendarContract.ExtendedProperties.EVENT_ID, eventIndex)
                                             .withValue(CalendarContract.ExtendedProperties.NAME, CalendarUtils.EXTENDED_PROPERTY_NAME_KUSSS_ID)
-                                            .withValue(CalendarContract.ExtendedProperties.VALUE, v.getUid().getValue()).build());
+                                            .withValue(CalendarContract.ExtendedProperties.VALUE, v.getUid()).build());
                                     // add location extra for google maps
-                                    batch.add(ContentProviderOperation
+                                    batch.addDependent(ContentProviderOperation
                                             .newInsert(
                                                     KusssContentContract
                                                             .asEventSyncAdapter(
@@ -414,6 +384,17 @@ public class ImportCalendarWorker extends BaseWorker {
                                             .withValueBackReference(CalendarContract.ExtendedProperties.EVENT_ID, eventIndex)
                                             .withValue(CalendarContract.ExtendedProperties.NAME, CalendarUtils.EXTENDED_PROPERTY_LOCATION_EXTRA)
                                             .withValue(CalendarContract.ExtendedProperties.VALUE, getLocationExtra(v)).build());
+                                    // add content hash for change detection
+                                    batch.addDependent(ContentProviderOperation
+                                            .newInsert(
+                                                    KusssContentContract
+                                                            .asEventSyncAdapter(
+                                                                    CalendarContract.ExtendedProperties.CONTENT_URI,
+                                                                    mAccount.name,
+                                                                    mAccount.type))
+                                            .withValueBackReference(CalendarContract.ExtendedProperties.EVENT_ID, eventIndex)
+                                            .withValue(CalendarContract.ExtendedProperties.NAME, CalendarUtils.EXTENDED_PROPERTY_NAME_KUSSS_HASH)
+                                            .withValue(CalendarContract.ExtendedProperties.VALUE, Long.toString(v.getContentHash())).build());
                                 }
                             }
                         }
@@ -424,7 +405,7 @@ public class ImportCalendarWorker extends BaseWorker {
 
                 if (batch.size() > 0) {
                     logger.debug("Applying batch update");
-                    mProvider.applyBatch(batch);
+                    applyBatch(mProvider, batch);
                     logger.debug("Notify resolver");
                     mResolver.notifyChange(calUri.buildUpon()
                                     .appendPath(calendarId).build(), // URI
@@ -439,7 +420,9 @@ public class ImportCalendarWorker extends BaseWorker {
                     logger.warn("No batch operations found! Do nothing");
                 }
 
-                KusssHandler.getInstance().logout(getApplicationContext());
+                for (String endpoint : mergedEndpoints) {
+                    KusssHandler.getInstance().commitFingerprint(getApplicationContext(), endpoint);
+                }
             } else {
                 return getRetry();
             }
@@ -456,36 +439,59 @@ public class ImportCalendarWorker extends BaseWorker {
             } else {
                 mProvider.release();
             }
+            releaseKusssSession();
             cancelUpdateNotification();
         }
     }
 
-    private void enforceFieldsNotNull(VEvent ev) {
-        if (ev.getDescription() == null) {
-            ev.getProperties().add(new Description());
-        }
-        if (ev.getDescription().getValue() == null) {
-            ev.getDescription().setValue("");
-        }
-        if (ev.getSummary() == null) {
-            ev.getProperties().add(new Summary(""));
-        }
-        if (ev.getSummary().getValue() == null) {
-            ev.getSummary().setValue("");
-        }
-        if (ev.getLocation() == null) {
-            ev.getProperties().add(new Location());
+    private static String trim(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    private static long parseContentHash(String value) {
+        if (value != null) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                logger.warn("invalid content hash {}", value);
+            }
         }
-        if (ev.getLocation().getValue() == null) {
-            ev.getLocation().setValue("");
+        // 0 is not produced by ICalEvent
+        return 0;
+    }
+
+    /**
+     * compares the texts of an event without stored content hash
+     *
+     * @param event incoming event
+     * @param c     cursor at the local event
+     * @return true if title, location and description are equal
+     */
+    private static boolean hasEqualContent(ICalEvent event, Cursor c) {
+        return event.getTitle().equals(trim(c.getString(CalendarUtils.COLUMN_EVENT_TITLE))) &&
+                event.getLocation().equals(trim(c.getString(CalendarUtils.COLUMN_EVENT_LOCATION))) &&
+                event.getDescription().equals(trim(c.getString(CalendarUtils.COLUMN_EVENT_DESCRIPTION)));
+    }
+
+    private static ContentProviderOperation newContentHashOperation(Account account, String eventId, boolean exists, ICalEvent event) {
+        Uri uri = KusssContentContract.asEventSyncAdapter(CalendarContract.ExtendedProperties.CONTENT_URI, account.name, account.type);
+        if (exists) {
+            return ContentProviderOperation.newUpdate(uri)
+                    .withSelection(CalendarContract.ExtendedProperties.EVENT_ID + " = ? AND " + CalendarContract.ExtendedProperties.NAME + " = ?",
+                            new String[]{eventId, CalendarUtils.EXTENDED_PROPERTY_NAME_KUSSS_HASH})
+                    .withValue(CalendarContract.ExtendedProperties.VALUE, Long.toString(event.getContentHash()))
+                    .build();
         }
+        return ContentProviderOperation.newInsert(uri)
+                .withValue(CalendarContract.ExtendedProperties.EVENT_ID, eventId)
+                .withValue(CalendarContract.ExtendedProperties.NAME, CalendarUtils.EXTENDED_PROPERTY_NAME_KUSSS_HASH)
+                .withValue(CalendarContract.ExtendedProperties.VALUE, Long.toString(event.getContentHash()))
+                .build();
     }
 
-    private boolean splitSummaryV1(VEvent ev, String lineSeparator) {
-        String summary = ev.getSummary().getValue()
-                .trim();
-        String description = ev.getDescription()
-                .getValue().trim();
+    private ICalEvent splitSummaryV1(ICalEvent ev, String lineSeparator) {
+        String summary = ev.getTitle();
+        String description = ev.getDescription();
 
         Matcher courseIdTermMatcher = courseIdTermPattern
                 .matcher(summary); // (courseId/term)
@@ -510,19 +516,17 @@ public class ImportCalendarWorker extends BaseWorker {
         }
 
         summary = summary.trim().replaceAll("([\\r\\n]|\\\\n)+", ", ").trim();
-        description = description.trim();
 
-        ev.getSummary().setValue(summary);
-        ev.getDescription().setValue(description);
-
-        return true;
+        return ev.withText(summary, description);
     }
 
-    private boolean splitSummaryV2(VEvent ev, String lineSeparator) {
-        String summary = ev.getSummary().getValue().trim()
+    /**
+     * @return event with split summary or null if summary has an unknown format
+     */
+    private ICalEvent splitSummaryV2(ICalEvent ev, String lineSeparator) {
+        String summary = ev.getTitle()
                 .replaceAll("([\\r\\n]|\\\\n)+", ", ").trim();
-        String description = ev.getDescription()
-                .getValue().trim();
+        String description = ev.getDescription();
         // Summary: Lecture / Lecturer / courseId
         List<String> values = new ArrayList<>(Arrays.asList(summary.split("\\s+/\\s+", -1)));
         if (values.size() >= 3) {
@@ -538,12 +542,9 @@ public class ImportCalendarWorker extends BaseWorker {
 
             summary = TextUtils.join(" / ", values);
 
-            ev.getSummary().setValue(summary.trim());
-            ev.getDescription().setValue(description.trim());
-
-            return true;
+            return ev.withText(summary, description);
         }
-        return false;
+        return null;
     }
 
     private String appendWithNewLines(String content, String append, String lineSeparator) {
@@ -563,27 +564,25 @@ public class ImportCalendarWorker extends BaseWorker {
         }
     }
 
-    private String getEventString(Context c, VEvent v) {
-        return AppUtils.getEventString(c, v.getStartDate().getDate().getTime(), v
-                .getEndDate().getDate().getTime(), v.getSummary().getValue()
-                .trim(), false);
+    private String getEventString(Context c, ICalEvent v) {
+        return AppUtils.getEventString(c, v.getDtStart(), v.getDtEnd(), v.getTitle(), false);
     }
 
-    private ContentValues getContentValuesFromEvent(VEvent v) {
+    private ContentValues getContentValuesFromEvent(ICalEvent v) {
         ContentValues cv = new ContentValues();
 
-        cv.put(CalendarContract.Events.EVENT_LOCATION, v.getLocation().getValue().trim());
-        cv.put(CalendarContract.Events.TITLE, v.getSummary().getValue().trim());
-        cv.put(CalendarContract.Events.DESCRIPTION, v.getDescription().getValue().trim());
-        cv.put(CalendarContract.Events.DTSTART, v.getStartDate().getDate().getTime());
-        cv.put(CalendarContract.Events.DTEND, v.getEndDate().getDate().getTime());
+        cv.put(CalendarContract.Events.EVENT_LOCATION, v.getLocation());
+        cv.put(CalendarContract.Events.TITLE, v.getTitle());
+        cv.put(CalendarContract.Events.DESCRIPTION, v.getDescription());
+        cv.put(CalendarContract.Events.DTSTART, v.getDtStart());
+        cv.put(CalendarContract.Events.DTEND, v.getDtEnd());
 
         return cv;
     }
 
-    private String getLocationExtra(VEvent event) {
+    private String getLocationExtra(ICalEvent event) {
         try {
-            String name = event.getLocation().getValue().trim();
+            String name = event.getLocation();
             String upperCaseName = name.toUpperCase(Locale.getDefault());
 
             String formattedAddress = "Altenbergerstraße 69, 4040 Linz, Österreich";
@@ -29,6 +29,7 @@ import android.accounts.Account;
 import android.content.ContentProviderClient;
 import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
+import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
@@ -39,6 +40,7 @@ import androidx.work.WorkerParameters;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.voidsink.anewjkuapp.CourseMap;
 import org.voidsink.anewjkuapp.KusssContentContract;
 import org.voidsink.anewjkuapp.R;
 import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
@@ -49,6 +51,7 @@ import org.voidsink.anewjkuapp.kusss.KusssHelper;
 import org.voidsink.anewjkuapp.kusss.Term;
 import org.voidsink.anewjkuapp.provider.KusssContentProvider;
 import org.voidsink.anewjkuapp.utils.AppUtils;
+import org.voidsink.anewjkuapp.utils.ChunkedBatch;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -95,10 +98,7 @@ public class ImportCourseWorker extends BaseWorker {
 
             updateNotification(getApplicationContext().getString(R.string.notification_sync_connect));
 
-            if (KusssHandler.getInstance().isAvailable(getApplicationContext(),
-                    AppUtils.getAccountAuthToken(getApplicationContext(), mAccount),
-                    AppUtils.getAccountName(mAccount),
-                    AppUtils.getAccountPassword(getApplicationContext(), mAccount))) {
+            if (acquireKusssSession(mAccount)) {
 
                 updateNotification(getApplicationContext().getString(R.string.notification_sync_lva_loading));
 
@@ -122,7 +122,8 @@ public class ImportCourseWorker extends BaseWorker {
 
                     updateNotification(getApplicationContext().getString(R.string.notification_sync_lva_updating));
 
-                    ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+                    ChunkedBatch batch = new ChunkedBatch();
+                    List<ContentValues> upserts = new ArrayList<>();
 
                     Uri lvaUri = KusssContentContract.Course.CONTENT_URI;
 
@@ -148,26 +149,10 @@ public class ImportCourseWorker extends BaseWorker {
                                 if (term != null && term.isLoaded()) {
                                     Course course = lvaMap.remove(KusssHelper.getCourseKey(term, courseId));
                                     if (course != null) {
-                                        // Check to see if the entry needs to be
-                                        // updated
-                                        Uri existingUri = lvaUri
-                                                .buildUpon()
-                                                .appendPath(Integer.toString(_id))
-                                                .build();
-                                        logger.debug("Scheduling update: {}", existingUri);
+                                        // update by natural key
+                                        logger.debug("Scheduling update: {}", _id);
 
-                                        batch.add(ContentProviderOperation
-                                                .newUpdate(
-                                                        KusssContentContract
-                                                                .asEventSyncAdapter(
-                                                                        existingUri,
-                                                                        mAccount.name,
-                                                                        mAccount.type))
-                                                .withValue(
-                                                        KusssContentContract.Course.COL_ID,
-                                                        Integer.toString(_id))
-                                                .withValues(KusssHelper.getLvaContentValues(course))
-                                                .build());
+                                        upserts.add(KusssHelper.getLvaContentValues(course));
                                     } else {
                                         // delete
                                         logger.debug("delete: {}", KusssHelper.getCourseKey(term, courseId));
@@ -197,15 +182,7 @@ public class ImportCourseWorker extends BaseWorker {
                                 // insert only lvas from loaded terms, ignore all other
                                 Term term = termMap.get(course.getTerm().toString());
                                 if (term != null && term.isLoaded()) {
-                                    batch.add(ContentProviderOperation
-                                            .newInsert(
-                                                    KusssContentContract
-                                                            .asEventSyncAdapter(
-                                                                    lvaUri,
-                                                                    mAccount.name,
-                                                                    mAccount.type))
-                                            .withValues(KusssHelper.getLvaContentValues(course))
-                                            .build());
+                                    upserts.add(KusssHelper.getLvaContentValues(course));
                                     logger.debug("Scheduling insert: {} {}", course.getTerm(), course.getCourseId());
                                 } else {
                                 }
@@ -213,9 +190,12 @@ public class ImportCourseWorker extends BaseWorker {
 
                             updateNotification(getApplicationContext().getString(R.string.notification_sync_lva_saving));
 
-                            if (batch.size() > 0) {
+                            if (batch.size() > 0 || upserts.size() > 0) {
                                 logger.debug("Applying batch update");
-                                mProvider.applyBatch(batch);
+                                applyBatch(mProvider, batch);
+                                bulkInsert(mProvider, KusssContentContract.asEventSyncAdapter(lvaUri, mAccount.name, mAccount.type), upserts, true);
+                                // the observer of the shared index runs on the main thread, a following exam import must not see the old courses
+                                CourseMap.invalidate();
                                 logger.debug("Notify resolver");
                                 mResolver
                                         .notifyChange(
@@ -232,7 +212,6 @@ public class ImportCourseWorker extends BaseWorker {
                         }
                     }
                 }
-                KusssHandler.getInstance().logout(getApplicationContext());
             } else {
                 return getRetry();
             }
@@ -248,6 +227,7 @@ public class ImportCourseWorker extends BaseWorker {
             } else {
                 mProvider.release();
             }
+            releaseKusssSession();
             cancelUpdateNotification();
         }
     }
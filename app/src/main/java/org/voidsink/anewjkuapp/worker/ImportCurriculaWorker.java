@@ -47,8 +47,8 @@ import org.voidsink.anewjkuapp.kusss.Curriculum;
 import org.voidsink.anewjkuapp.kusss.KusssHandler;
 import org.voidsink.anewjkuapp.kusss.KusssHelper;
 import org.voidsink.anewjkuapp.utils.AppUtils;
+import org.voidsink.anewjkuapp.utils.ChunkedBatch;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -94,18 +94,17 @@ public class ImportCurriculaWorker extends BaseWorker {
 
             updateNotification(getApplicationContext().getString(R.string.notification_sync_connect));
 
-            if (KusssHandler.getInstance().isAvailable(getApplicationContext(),
-                    AppUtils.getAccountAuthToken(getApplicationContext(), mAccount),
-                    AppUtils.getAccountName(mAccount),
-                    AppUtils.getAccountPassword(getApplicationContext(), mAccount))) {
+            if (acquireKusssSession(mAccount)) {
 
                 updateNotification(getApplicationContext().getString(R.string.notification_sync_curricula_loading));
 
                 logger.debug("load lvas");
 
-                List<Curriculum> curricula = KusssHandler.getInstance().getCurricula(getApplicationContext());
+                List<Curriculum> curricula = KusssHandler.getInstance().getCurricula(getApplicationContext(), true);
                 if (curricula == null) {
                     return getRetry();
+                } else if (KusssHandler.getInstance().isUnchanged(getApplicationContext(), KusssHandler.ENDPOINT_CURRICULA)) {
+                    logger.debug("curricula unchanged, skip merge");
                 } else {
                     Map<String, Curriculum> curriculaMap = new HashMap<>();
                     for (Curriculum curriculum : curricula) {
@@ -116,7 +115,7 @@ public class ImportCurriculaWorker extends BaseWorker {
 
                     updateNotification(getApplicationContext().getString(R.string.notification_sync_curricula_updating));
 
-                    ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+                    ChunkedBatch batch = new ChunkedBatch();
 
                     Uri curriculaUri = KusssContentContract.Curricula.CONTENT_URI;
 
@@ -124,6 +123,7 @@ public class ImportCurriculaWorker extends BaseWorker {
                             null, null, null)) {
                         if (c == null) {
                             logger.warn("selection failed");
+                            return getRetry();
                         } else {
                             logger.debug("Found {} local entries. Computing merge solution...", c.getCount());
 
@@ -180,7 +180,7 @@ public class ImportCurriculaWorker extends BaseWorker {
 
                             if (batch.size() > 0) {
                                 logger.debug("Applying batch update");
-                                mProvider.applyBatch(batch);
+                                applyBatch(mProvider, batch);
                                 logger.debug("Notify resolver");
                                 mResolver
                                         .notifyChange(
@@ -197,7 +197,8 @@ public class ImportCurriculaWorker extends BaseWorker {
                         }
                     }
                 }
-                KusssHandler.getInstance().logout(getApplicationContext());
+
+                KusssHandler.getInstance().commitFingerprint(getApplicationContext(), KusssHandler.ENDPOINT_CURRICULA);
 
                 return getSuccess();
             } else {
@@ -213,6 +214,7 @@ public class ImportCurriculaWorker extends BaseWorker {
             } else {
                 mProvider.release();
             }
+            releaseKusssSession();
             cancelUpdateNotification();
         }
     }
@@ -29,6 +29,7 @@ import android.accounts.Account;
 import android.content.ContentProviderClient;
 import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
+import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
@@ -54,6 +55,7 @@ import org.voidsink.anewjkuapp.kusss.Term;
 import org.voidsink.anewjkuapp.notification.NewExamNotification;
 import org.voidsink.anewjkuapp.provider.KusssContentProvider;
 import org.voidsink.anewjkuapp.utils.AppUtils;
+import org.voidsink.anewjkuapp.utils.ChunkedBatch;
 
 import java.util.ArrayList;
 import java.util.Date;
@@ -103,15 +105,13 @@ public class ImportExamWorker extends BaseWorker {
         try {
             logger.debug("setup connection");
 
-            if (KusssHandler.getInstance().isAvailable(getApplicationContext(),
-                    AppUtils.getAccountAuthToken(getApplicationContext(), mAccount),
-                    AppUtils.getAccountName(mAccount),
-                    AppUtils.getAccountPassword(getApplicationContext(), mAccount))) {
+            if (acquireKusssSession(mAccount)) {
                 updateNotification(getApplicationContext().getString(R.string.notification_sync_exam_loading));
 
                 List<Exam> exams;
+                boolean useFingerprint = false;
                 if (PreferenceHelper.getNewExamsByCourseId(getApplicationContext())) {
-                    CourseMap courseMap = new CourseMap(getApplicationContext());
+                    CourseMap courseMap = CourseMap.getInstance(getApplicationContext());
                     List<Term> terms = KusssContentProvider.getTerms(getApplicationContext());
 
                     logger.debug("load exams by courseId");
@@ -120,10 +120,13 @@ public class ImportExamWorker extends BaseWorker {
                 } else {
                     logger.debug("load exams");
                     exams = KusssHandler.getInstance()
-                            .getNewExams(getApplicationContext());
+                            .getNewExams(getApplicationContext(), true);
+                    useFingerprint = true;
                 }
                 if (exams == null) {
                     return getRetry();
+                } else if (useFingerprint && KusssHandler.getInstance().isUnchanged(getApplicationContext(), KusssHandler.ENDPOINT_EXAMS)) {
+                    logger.debug("exams unchanged, skip merge");
                 } else {
                     Map<String, Exam> examMap = new HashMap<>();
                     for (Exam exam : exams) {
@@ -137,7 +140,8 @@ public class ImportExamWorker extends BaseWorker {
 
                     updateNotification(getApplicationContext().getString(R.string.notification_sync_exam_updating));
 
-                    ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+                    ChunkedBatch batch = new ChunkedBatch();
+                    List<ContentValues> upserts = new ArrayList<>();
 
                     Uri examUri = KusssContentContract.Exam.CONTENT_URI;
 
@@ -145,6 +149,7 @@ public class ImportExamWorker extends BaseWorker {
                             null, null, null)) {
                         if (c == null) {
                             logger.warn("selection failed");
+                            return getRetry();
                         } else {
                             logger.debug("Found {} local entries. Computing merge solution...", c.getCount());
                             int examId;
@@ -164,14 +169,8 @@ public class ImportExamWorker extends BaseWorker {
 
                                 Exam exam = examMap.remove(KusssHelper.getExamKey(examCourseId, examTerm, examDtStart));
                                 if (exam != null) {
-                                    // Check to see if the entry needs to be
-                                    // updated
-                                    Uri existingUri = examUri
-                                            .buildUpon()
-                                            .appendPath(
-                                                    Integer.toString(examId))
-                                            .build();
-                                    logger.debug("Scheduling update: {}", existingUri);
+                                    // update by natural key
+                                    logger.debug("Scheduling update: {}", examId);
 
                                     if (!CalendarUtils.isSameDay(
                                             new Date(examDtStart), exam.getDtStart())
@@ -180,18 +179,7 @@ public class ImportExamWorker extends BaseWorker {
                                         mChangedNotification.addUpdate(getEventString(getApplicationContext(), exam));
                                     }
 
-                                    batch.add(ContentProviderOperation
-                                            .newUpdate(
-                                                    KusssContentContract
-                                                            .asEventSyncAdapter(
-                                                                    existingUri,
-                                                                    mAccount.name,
-                                                                    mAccount.type))
-                                            .withValue(
-                                                    KusssContentContract.Exam.COL_ID,
-                                                    Integer.toString(examId))
-                                            .withValues(KusssHelper.getExamContentValues(exam))
-                                            .build());
+                                    upserts.add(KusssHelper.getExamContentValues(exam));
                                 } else if (examDtStart >= mSyncFromNow) {
                                     // Entry doesn't exist. Remove only newer
                                     // events from the database.
@@ -213,15 +201,7 @@ public class ImportExamWorker extends BaseWorker {
                                 }
                             }
                             for (Exam exam : examMap.values()) {
-                                batch.add(ContentProviderOperation
-                                        .newInsert(
-                                                KusssContentContract
-                                                        .asEventSyncAdapter(
-                                                                examUri,
-                                                                mAccount.name,
-                                                                mAccount.type))
-                                        .withValues(KusssHelper.getExamContentValues(exam))
-                                        .build());
+                                upserts.add(KusssHelper.getExamContentValues(exam));
                                 logger.debug("Scheduling insert: {} {}", exam.getTerm(), exam.getCourseId());
 
                                 mChangedNotification.addInsert(getEventString(getApplicationContext(), exam));
@@ -229,9 +209,10 @@ public class ImportExamWorker extends BaseWorker {
 
                             updateNotification(getApplicationContext().getString(R.string.notification_sync_exam_saving));
 
-                            if (batch.size() > 0) {
+                            if (batch.size() > 0 || upserts.size() > 0) {
                                 logger.debug("Applying batch update");
-                                mProvider.applyBatch(batch);
+                                applyBatch(mProvider, batch);
+                                bulkInsert(mProvider, KusssContentContract.asEventSyncAdapter(examUri, mAccount.name, mAccount.type), upserts, true);
                                 logger.debug("Notify resolver");
                                 mResolver
                                         .notifyChange(
@@ -249,7 +230,9 @@ public class ImportExamWorker extends BaseWorker {
                     }
                 }
 
-                KusssHandler.getInstance().logout(getApplicationContext());
+                if (useFingerprint) {
+                    KusssHandler.getInstance().commitFingerprint(getApplicationContext(), KusssHandler.ENDPOINT_EXAMS);
+                }
             } else {
                 return getRetry();
             }
@@ -266,6 +249,7 @@ public class ImportExamWorker extends BaseWorker {
             } else {
                 mProvider.release();
             }
+            releaseKusssSession();
             cancelUpdateNotification();
         }
     }
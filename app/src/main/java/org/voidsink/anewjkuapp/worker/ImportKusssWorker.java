@@ -0,0 +1,132 @@
+/*
+ *       ____.____  __.____ ___     _____
+ *      |    |    |/ _|    |   \   /  _  \ ______ ______
+ *      |    |      < |    |   /  /  /_\  \\____ \\____ \
+ *  /\__|    |    |  \|    |  /  /    |    \  |_> >  |_> >
+ *  \________|____|__ \______/   \____|__  /   __/|   __/
+ *                   \/                  \/|__|   |__|
+ *
+ *  Copyright (c) 2014-2020 Paul "Marunjar" Pretsch
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.voidsink.anewjkuapp.worker;
+
+import android.Manifest;
+import android.accounts.Account;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.text.format.DateUtils;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.work.WorkerParameters;
+
+import net.fortuna.ical4j.data.CalendarBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.voidsink.anewjkuapp.R;
+import org.voidsink.anewjkuapp.analytics.AnalyticsHelper;
+import org.voidsink.anewjkuapp.base.BaseWorker;
+import org.voidsink.anewjkuapp.calendar.CalendarUtils;
+import org.voidsink.anewjkuapp.kusss.KusssHandler;
+import org.voidsink.anewjkuapp.kusss.Term;
+import org.voidsink.anewjkuapp.provider.KusssContentProvider;
+import org.voidsink.anewjkuapp.utils.AppUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Loads courses and calendars of all terms with one term walk and starts the import workers
+ * which merge the loaded data, see {@link KusssHandler#walkTerms(Context, CalendarBuilder, List, List, Date)}
+ */
+public class ImportKusssWorker extends BaseWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportKusssWorker.class);
+
+    private final CalendarBuilder mCalendarBuilder;
+
+    public ImportKusssWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+
+        this.mCalendarBuilder = CalendarUtils.newCalendarBuilder(); // must create in main
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        return walkTerms();
+    }
+
+    private Result walkTerms() {
+        final Account mAccount = AppUtils.getAccount(getApplicationContext());
+        if (mAccount == null) {
+            return getSuccess();
+        }
+
+        final long mSyncFromNow = System.currentTimeMillis() / DateUtils.DAY_IN_MILLIS * DateUtils.DAY_IN_MILLIS;
+
+        showUpdateNotification(R.string.notification_sync_lva, R.string.notification_sync_lva_loading);
+
+        try {
+            logger.debug("setup connection");
+
+            updateNotification(getApplicationContext().getString(R.string.notification_sync_connect));
+
+            if (acquireKusssSession(mAccount)) {
+                updateNotification(getApplicationContext().getString(R.string.notification_sync_lva_loading));
+
+                boolean syncCalendars = AppUtils.isCalendarSyncEnabled(getApplicationContext()) &&
+                        (ContextCompat.checkSelfPermission(getApplicationContext(), Manifest.permission.WRITE_CALENDAR) == PackageManager.PERMISSION_GRANTED) &&
+                        (ContextCompat.checkSelfPermission(getApplicationContext(), Manifest.permission.READ_CALENDAR) == PackageManager.PERMISSION_GRANTED);
+
+                List<String> calendarNames = new ArrayList<>();
+                if (syncCalendars) {
+                    if (CalendarUtils.getSyncCalendar(getApplicationContext(), CalendarUtils.ARG_CALENDAR_COURSE)) {
+                        calendarNames.add(CalendarUtils.ARG_CALENDAR_COURSE);
+                    }
+                    if (CalendarUtils.getSyncCalendar(getApplicationContext(), CalendarUtils.ARG_CALENDAR_EXAM)) {
+                        calendarNames.add(CalendarUtils.ARG_CALENDAR_EXAM);
+                    }
+                }
+
+                List<Term> terms = KusssContentProvider.getTerms(getApplicationContext());
+
+                logger.debug("walk {} terms, {} calendars", terms.size(), calendarNames.size());
+
+                if (!KusssHandler.getInstance().walkTerms(getApplicationContext(), mCalendarBuilder, terms, calendarNames, new Date(mSyncFromNow))) {
+                    return getRetry();
+                }
+
+                AppUtils.enqueueKusssImport(getApplicationContext(), syncCalendars);
+            } else {
+                return getRetry();
+            }
+
+            return getSuccess();
+        } catch (Exception e) {
+            AnalyticsHelper.sendException(getApplicationContext(), e, true);
+
+            return getRetry();
+        } finally {
+            releaseKusssSession();
+            cancelUpdateNotification();
+        }
+    }
+}